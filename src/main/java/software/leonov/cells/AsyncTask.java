@@ -0,0 +1,84 @@
+package software.leonov.cells;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A {@code CompletableFuture} which runs a blocking task on a caller-supplied executor and interrupts the task when it
+ * is cancelled.
+ * <p>
+ * Cancelling a plain {@code CompletableFuture} only completes the future, the task keeps running and its result is
+ * silently dropped. Cancelling an {@code AsyncTask} that has not started yet prevents it from running. Cancelling a
+ * running task interrupts its thread, which aborts blocking {@link java.nio.channels.InterruptibleChannel channel} I/O,
+ * and a result which is produced anyway is passed to the {@code discard} callback so it can be released.
+ *
+ * @param <T> the type of the result
+ * @author Zhenya Leonov
+ */
+final class AsyncTask<T> extends CompletableFuture<T> implements Runnable {
+
+    private final Callable<? extends T> task;
+    private final Consumer<? super T>   discard;
+    private Thread                      runner = null; // guarded by this
+
+    private AsyncTask(final Callable<? extends T> task, final Consumer<? super T> discard) {
+        this.task    = task;
+        this.discard = discard;
+    }
+
+    /**
+     * Submits the specified task to the specified executor.
+     *
+     * @param <T>      the type of the result
+     * @param task     the task
+     * @param discard  releases a result which was produced after the task was cancelled
+     * @param executor the executor
+     * @return a future which completes with the result of the task
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    static <T> CompletableFuture<T> submit(final Callable<? extends T> task, final Consumer<? super T> discard, final Executor executor) {
+        final AsyncTask<T> future = new AsyncTask<>(task, discard);
+        executor.execute(future);
+        return future;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (isDone())
+                return;
+            runner = Thread.currentThread();
+        }
+
+        try {
+            final T result = task.call();
+            if (!complete(result))
+                discard.accept(result);
+        } catch (final Throwable t) {
+            completeExceptionally(t);
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            if (isCancelled())
+                Thread.interrupted(); // do not leak the interrupt to the next task of the executor
+        }
+    }
+
+    /**
+     * Cancels this task, interrupting its thread if it is running, regardless of {@code mayInterruptIfRunning}.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled)
+            synchronized (this) {
+                if (runner != null)
+                    runner.interrupt();
+            }
+        return cancelled;
+    }
+
+}
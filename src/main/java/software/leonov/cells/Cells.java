@@ -3,20 +3,21 @@ package software.leonov.cells;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.emptyToNull;
+import static software.leonov.common.base.Str.isWhitespace;
 import static software.leonov.common.base.Str.trim;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 
 import org.apache.poi.common.usermodel.HyperlinkType;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Hyperlink;
 import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
@@ -42,8 +43,6 @@ final public class Cells {
      */
     public static final int MAX_CELL_SIZE = 32767;
 
-    private static final DataFormatter DATA_FORMATTER = new DataFormatter();
-
     private Cells() {
     }
 
@@ -108,6 +107,164 @@ final public class Cells {
         return to;
     }
 
+    /**
+     * Returns the value of the specified cell as a {@code boolean}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * Unlike {@link #parseBoolean(Cell)} this method does not format the cell. {@code BOOLEAN} cells and {@code FORMULA}
+     * cells with a cached boolean result are returned as is, {@code STRING} cells must be equal to "true" or "false"
+     * (ignoring case and whitespace).
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code boolean}
+     * @throws IllegalArgumentException if the value of the cell is not a boolean
+     */
+    public static boolean getBoolean(final Cell cell, final boolean defaultValue) {
+        if (cell == null)
+            return defaultValue;
+
+        switch (getValueType(cell)) {
+        case BOOLEAN:
+            return cell.getBooleanCellValue();
+        case STRING:
+            final String value = trim(cell.getStringCellValue());
+            if (value.isEmpty())
+                return defaultValue;
+            else if (value.equalsIgnoreCase("true"))
+                return true;
+            else if (value.equalsIgnoreCase("false"))
+                return false;
+            else
+                throw new IllegalArgumentException("not a boolean: " + value);
+        case BLANK:
+            return defaultValue;
+        default:
+            throw new IllegalArgumentException("not a boolean: " + formatValue(cell));
+        }
+    }
+
+    /**
+     * Returns the value of the specified cell as a {@code byte}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * See {@link #getLong(Cell, long)} for further details.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code byte}
+     * @throws NumberFormatException if the value of the cell is not a whole number within the range of a {@code byte}
+     */
+    public static byte getByte(final Cell cell, final byte defaultValue) {
+        return (byte) checkRange(getLong(cell, defaultValue), Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value of the specified cell as a {@code double}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * Unlike {@link #parseDouble(Cell)} this method does not format the cell and does not allocate. The stored value of
+     * {@code NUMERIC} cells and {@code FORMULA} cells with a cached numeric result is returned as is, regardless of the
+     * cell's data format. {@code STRING} cells are parsed, ignoring leading and trailing whitespace.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code double}
+     * @throws NumberFormatException if the value of the cell is not a number
+     */
+    public static double getDouble(final Cell cell, final double defaultValue) {
+        if (cell == null)
+            return defaultValue;
+
+        switch (getValueType(cell)) {
+        case NUMERIC:
+            return cell.getNumericCellValue();
+        case STRING:
+            final String value = cell.getStringCellValue();
+            return isWhitespace(value) ? defaultValue : NumberParser.parseDouble(value);
+        case BLANK:
+            return defaultValue;
+        default:
+            throw new NumberFormatException("not a number: " + formatValue(cell));
+        }
+    }
+
+    /**
+     * Returns the value of the specified cell as a {@code float}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * See {@link #getDouble(Cell, double)} for further details.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code float}
+     * @throws NumberFormatException if the value of the cell is not a number
+     */
+    public static float getFloat(final Cell cell, final float defaultValue) {
+        return (float) getDouble(cell, defaultValue);
+    }
+
+    /**
+     * Returns the value of the specified cell as an {@code int}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * See {@link #getLong(Cell, long)} for further details.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as an {@code int}
+     * @throws NumberFormatException if the value of the cell is not a whole number within the range of an {@code int}
+     */
+    public static int getInt(final Cell cell, final int defaultValue) {
+        return (int) checkRange(getLong(cell, defaultValue), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the value of the specified cell as a {@code long}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * Unlike {@link #parseLong(Cell)} this method does not format the cell and does not allocate. The stored value of
+     * {@code NUMERIC} cells and {@code FORMULA} cells with a cached numeric result is used as is, regardless of the cell's
+     * data format. {@code STRING} cells are parsed, ignoring leading and trailing whitespace. In either case the value must
+     * be a whole number: 12 and 12.0 are accepted, 12.5 is not.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code long}
+     * @throws NumberFormatException if the value of the cell is not a whole number within the range of a {@code long}
+     */
+    public static long getLong(final Cell cell, final long defaultValue) {
+        if (cell == null)
+            return defaultValue;
+
+        switch (getValueType(cell)) {
+        case NUMERIC:
+            return NumberParser.toLong(cell.getNumericCellValue());
+        case STRING:
+            final String value = cell.getStringCellValue();
+            return isWhitespace(value) ? defaultValue : NumberParser.parseLong(value);
+        case BLANK:
+            return defaultValue;
+        default:
+            throw new NumberFormatException("not a number: " + formatValue(cell));
+        }
+    }
+
+    /**
+     * Returns the value of the specified cell as a {@code short}, or {@code defaultValue} if the cell is {@code null} or
+     * blank.
+     * <p>
+     * See {@link #getLong(Cell, long)} for further details.
+     * 
+     * @param cell         the specified cell
+     * @param defaultValue the value to return if the cell is {@code null} or blank
+     * @return the value of the specified cell as a {@code short}
+     * @throws NumberFormatException if the value of the cell is not a whole number within the range of a {@code short}
+     */
+    public static short getShort(final Cell cell, final short defaultValue) {
+        return (short) checkRange(getLong(cell, defaultValue), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
     /**
      * Returns the value of the specified cell parsed as a {@code Boolean}.
      * <p>
@@ -221,20 +378,67 @@ final public class Cells {
     }
 
     /**
-     * Returns the value of the specified cell parsed as an {@code Instant} using the system default time-zone offset.
+     * Returns the value of the specified cell parsed as an {@code Instant} using the system default time-zone.
      * <p>
      * This method is {@code null} safe. If the specified cell is {@code null} or blank this method will return a
      * {@code null} value.
      * 
      * @param cell the specified cell
-     * @return the value of the specified cell parsed as an {@code Instant} using the system default time-zone offset
+     * @return the value of the specified cell parsed as an {@code Instant} using the system default time-zone
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a date
      */
     public static Instant parseDate(final Cell cell) {
-        final Double d = parseDouble(cell);
-        if (d == null)
-            return null;
-        // checkState(d > -Double.MIN_VALUE, "The specified cell cannot be parsed as a Date, %s < -Double.MIN_VALUE", d);
-        return DateUtil.getLocalDateTime(d).toInstant(OffsetDateTime.now().getOffset());
+        return parseDate(cell, ZoneId.systemDefault());
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as an {@code Instant} in the specified time-zone.
+     * <p>
+     * This method is {@code null} safe. If the specified cell is {@code null} or blank this method will return a
+     * {@code null} value.
+     * <p>
+     * The serial date stored in the cell is converted arithmetically by {@link SerialDates}, using the date system of the
+     * cell's workbook. The cell is not formatted.
+     * 
+     * @param cell the specified cell
+     * @param zone the time-zone of the cell's value
+     * @return the value of the specified cell parsed as an {@code Instant} in the specified time-zone
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a date
+     */
+    public static Instant parseDate(final Cell cell, final ZoneId zone) {
+        checkNotNull(zone, "zone == null");
+        final double serial = getDouble(cell, Double.NaN);
+        return Double.isNaN(serial) ? null : SerialDates.toInstant(serial, isDate1904(cell), zone);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code LocalDate}, ignoring the time of day.
+     * <p>
+     * This method is {@code null} safe. If the specified cell is {@code null} or blank this method will return a
+     * {@code null} value.
+     * 
+     * @param cell the specified cell
+     * @return the value of the specified cell parsed as a {@code LocalDate}
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a date
+     */
+    public static LocalDate parseLocalDate(final Cell cell) {
+        final double serial = getDouble(cell, Double.NaN);
+        return Double.isNaN(serial) ? null : SerialDates.toLocalDate(serial, isDate1904(cell));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code LocalDateTime}.
+     * <p>
+     * This method is {@code null} safe. If the specified cell is {@code null} or blank this method will return a
+     * {@code null} value.
+     * 
+     * @param cell the specified cell
+     * @return the value of the specified cell parsed as a {@code LocalDateTime}
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a date
+     */
+    public static LocalDateTime parseLocalDateTime(final Cell cell) {
+        final double serial = getDouble(cell, Double.NaN);
+        return Double.isNaN(serial) ? null : SerialDates.toLocalDateTime(serial, isDate1904(cell));
     }
 
     /**
@@ -247,15 +451,29 @@ final public class Cells {
      * regardless of the cell type (e.g. 5.200 would be returned as 5.200 not 5.2).
      * <p>
      * Note: This method is not equivalent to {@link Cell#getStringCellValue()}.
+     * <p>
+     * This method is thread-safe, see {@link ValueFormatter} for details.
      * 
      * @param cell the specified cell
      * @return the formatted value of the specified cell
      */
     public static String formatValue(final Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK)
-            return null;
         // if (cell.getCellType() == CellType.BOOLEAN) return cell.toString().toUpperCase(); // why do we need this?
-        return emptyToNull(trim((DATA_FORMATTER.formatCellValue(cell))));
+        return ValueFormatter.getInstance().format(cell);
+    }
+
+    /**
+     * Returns the formatted value of the specified cell using the specified locale.
+     * <p>
+     * See {@link #formatValue(Cell)} for further details.
+     * 
+     * @param cell   the specified cell
+     * @param locale the locale to format with
+     * @return the formatted value of the specified cell
+     */
+    public static String formatValue(final Cell cell, final Locale locale) {
+        checkNotNull(locale, "locale == null");
+        return ValueFormatter.getInstance(locale).format(cell);
     }
 
     /**
@@ -376,4 +594,20 @@ final public class Cells {
         return cell;
     }
 
+    // Returns the type of the cell's value, which for formula cells is the type of the cached result
+    private static CellType getValueType(final Cell cell) {
+        final CellType type = cell.getCellType();
+        return type == CellType.FORMULA ? cell.getCachedFormulaResultType() : type;
+    }
+
+    private static boolean isDate1904(final Cell cell) {
+        return Workbooks.isDate1904(getWorkbookOf(cell));
+    }
+
+    private static long checkRange(final long value, final long min, final long max) {
+        if (value < min || value > max)
+            throw new NumberFormatException("value out of range: " + value);
+        return value;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package software.leonov.cells;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.poi.ss.usermodel.Font;
+
+/**
+ * A precomputed table of the advance widths of characters in a font, used by {@link ColumnWidths} to estimate the width
+ * of text without measuring it with AWT.
+ * <p>
+ * The widths of the printable ASCII characters are taken from the Adobe font metrics of Helvetica (which Arial is metric
+ * compatible with), Helvetica Bold, Times Roman, and Courier, and scaled for the other common Excel fonts. Wide East
+ * Asian characters are assumed to be one em wide and all other characters as wide as the letter {@code n}. The
+ * estimates are usually within a few percent of the rendered width, which the column padding absorbs.
+ * <p>
+ * Tables are immutable and cached by font name, size, and weight.
+ *
+ * @author Zhenya Leonov
+ */
+final class CharWidths {
+
+    // Widths of the characters ' ' to '~' in thousandths of an em
+    // @formatter:off
+    private static final short[] HELVETICA = {
+        278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278, // ' ' to '/'
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556, // '0' to '?'
+       1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778, // '@' to 'O'
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556, // 'P' to '_'
+        333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556, // '`' to 'o'
+        556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584       // 'p' to '~'
+    };
+
+    private static final short[] HELVETICA_BOLD = {
+        278, 333, 474, 556, 556, 889, 722, 238, 333, 333, 389, 584, 278, 333, 278, 278,
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 333, 333, 584, 584, 584, 611,
+        975, 722, 722, 722, 722, 667, 611, 778, 722, 278, 556, 722, 611, 833, 722, 778,
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 333, 278, 333, 584, 556,
+        333, 556, 611, 556, 611, 556, 333, 611, 611, 278, 278, 556, 278, 889, 611, 611,
+        611, 611, 389, 556, 333, 611, 556, 778, 556, 556, 500, 389, 280, 389, 584
+    };
+
+    private static final short[] TIMES = {
+        250, 333, 408, 500, 500, 833, 778, 180, 333, 333, 500, 564, 250, 333, 250, 278,
+        500, 500, 500, 500, 500, 500, 500, 500, 500, 500, 278, 278, 564, 564, 564, 444,
+        921, 722, 667, 667, 722, 611, 556, 722, 722, 333, 389, 722, 611, 889, 722, 722,
+        556, 722, 667, 556, 611, 722, 722, 944, 722, 722, 611, 333, 278, 333, 469, 500,
+        333, 444, 500, 444, 500, 444, 333, 500, 500, 278, 278, 500, 278, 778, 500, 500,
+        500, 500, 333, 389, 278, 500, 500, 722, 500, 500, 444, 480, 200, 480, 541
+    };
+    // @formatter:on
+
+    private static final int FIRST = ' ';
+    private static final int LAST  = '~';
+
+    private static final ConcurrentMap<String, CharWidths> CACHE = new ConcurrentHashMap<>();
+
+    private final float[] ascii = new float[LAST - FIRST + 1]; // in points
+    private final float   other;
+    private final float   wide;
+
+    private CharWidths(final String name, final float points, final boolean bold) {
+        final String family = name.toLowerCase(Locale.ROOT);
+
+        short[] metrics = bold ? HELVETICA_BOLD : HELVETICA;
+        float   scale   = 1f;
+
+        if (family.startsWith("courier") || family.contains("mono") || family.equals("consolas") || family.equals("lucida console")) {
+            metrics = null; // monospaced
+        } else if (family.startsWith("times") || family.equals("cambria") || family.equals("garamond")) {
+            metrics = TIMES;
+            scale   = bold ? 1.05f : 1f;
+        } else if (family.equals("georgia")) {
+            metrics = TIMES;
+            scale   = bold ? 1.18f : 1.12f;
+        } else if (family.startsWith("calibri"))
+            scale = 0.91f;
+        else if (family.equals("verdana"))
+            scale = 1.14f;
+        else if (family.equals("tahoma"))
+            scale = 0.98f;
+        else if (family.startsWith("comic sans"))
+            scale = 1.06f;
+        else if (family.equals("segoe ui"))
+            scale = 0.97f;
+
+        for (int c = FIRST; c <= LAST; c++)
+            ascii[c - FIRST] = (metrics == null ? 600 : metrics[c - FIRST]) * scale * points / 1000f;
+
+        this.other = ascii['n' - FIRST];
+        this.wide  = points;
+    }
+
+    /**
+     * Returns the table of the specified font.
+     *
+     * @param font the font
+     * @return the table of the specified font
+     */
+    static CharWidths of(final Font font) {
+        final String  name   = font.getFontName() == null ? "" : font.getFontName();
+        final float   points = font.getFontHeightInPoints();
+        final boolean bold   = font.getBold();
+        return CACHE.computeIfAbsent(name + '\0' + points + '\0' + bold, key -> new CharWidths(name, points, bold));
+    }
+
+    /**
+     * Returns the width of the digit {@code 0} in points, which is the unit of column widths.
+     *
+     * @return the width of the digit {@code 0} in points
+     */
+    float digitWidth() {
+        return ascii['0' - FIRST];
+    }
+
+    /**
+     * Returns the estimated width in points of the widest line of the specified text.
+     *
+     * @param text the text
+     * @return the estimated width in points of the widest line of the specified text
+     */
+    float width(final CharSequence text) {
+        float max   = 0f;
+        float width = 0f;
+
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '\n') {
+                max   = Math.max(max, width);
+                width = 0f;
+            } else if (c >= FIRST && c <= LAST)
+                width += ascii[c - FIRST];
+            else if (isWide(c))
+                width += wide;
+            else if (!Character.isLowSurrogate(c) && c != '\r')
+                width += other;
+        }
+
+        return Math.max(max, width);
+    }
+
+    // Hangul, CJK, and fullwidth forms, which are rendered one em wide
+    private static boolean isWide(final char c) {
+        return c >= '\u1100' && c <= '\u115F' || c >= '\u2E80' && c <= '\uA4CF' || c >= '\uAC00' && c <= '\uD7A3' || c >= '\uF900' && c <= '\uFAFF' || c >= '\uFE30' && c <= '\uFE4F' || c >= '\uFF00' && c <= '\uFF60' || c >= '\uFFE0' && c <= '\uFFE6';
+    }
+
+}
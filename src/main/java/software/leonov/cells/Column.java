@@ -0,0 +1,54 @@
+package software.leonov.cells;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import software.leonov.cells.RowSchema.NullPolicy;
+
+/**
+ * Maps a field to a column of the rows written and read by a {@link RowMapper}.
+ * <p>
+ * If a class has no fields annotated with {@code Column} all of its non-static, non-transient fields are mapped, in
+ * declaration order, using the defaults of this annotation.
+ *
+ * @author Zhenya Leonov
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface Column {
+
+    /**
+     * The header of the column, by default the name of the field.
+     *
+     * @return the header of the column
+     */
+    String header() default "";
+
+    /**
+     * The position of the column relative to the other columns. Columns with the same order keep their declaration order.
+     *
+     * @return the position of the column relative to the other columns
+     */
+    int order() default Integer.MAX_VALUE;
+
+    /**
+     * The data format of the column, such as {@code "#,##0.00"} or {@code "yyyy-mm-dd"}, by default the format of the
+     * column's style.
+     *
+     * @return the data format of the column
+     */
+    String format() default "";
+
+    /**
+     * What is written for {@code null} values.
+     *
+     * @return what is written for {@code null} values
+     */
+    NullPolicy nulls() default NullPolicy.SKIP;
+
+}
@@ -0,0 +1,458 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
+
+import java.util.Arrays;
+
+import org.apache.poi.ss.util.NumberToTextConverter;
+
+/**
+ * A fixed-size batch of rows stored column by column in primitive arrays, filled by a {@link ColumnBatchReader}.
+ * <p>
+ * Each column of the batch is read from a single column of the sheet and is stored as a {@code double[]},
+ * {@code long[]}, {@code boolean[]}, or {@code String[]} depending on its {@link Type}. Blank cells are recorded in a
+ * validity bitmap rather than as boxed {@code null}s. Numeric cells are copied directly from the stored {@code double}
+ * and are never formatted. Text cells are parsed, Excel's {@code TRUE} and {@code FALSE} are parsed by {@code BOOLEAN}
+ * columns. A cell which cannot be converted to the type of its column, such as a boolean in a {@code DOUBLE} column or a
+ * fractional number in a {@code LONG} column, causes the reader to throw an {@code IllegalArgumentException}.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final ColumnBatch batch = new ColumnBatch(4096)
+ *                         .addColumn("B", Type.DOUBLE)
+ *                         .addColumn("D", Type.LONG);
+ *
+ *   try (final ColumnBatchReader reader = Workbooks.readColumns(path, new ReadOptions().setRows(1, Integer.MAX_VALUE), batch)) {
+ *       while (reader.hasNext()) {
+ *           reader.next();
+ *           final double[] prices = batch.getDoubles(0);
+ *           for (int i = 0; i &lt; batch.size(); i++)
+ *               if (!batch.isNull(0, i))
+ *                   total += prices[i];
+ *       }
+ *   }
+ * </pre>
+ *
+ * The same arrays are reused for every batch: the contents of a batch are only valid until the next call to
+ * {@link ColumnBatchReader#hasNext()} or {@link ColumnBatchReader#next()}. The values of blank entries are unspecified.
+ * <p>
+ * Columns can only be added before the batch is passed to a reader.
+ *
+ * @author Zhenya Leonov
+ */
+public final class ColumnBatch {
+
+    /**
+     * The primitive type of a column.
+     */
+    public enum Type {
+        /**
+         * Values are stored in a {@code double[]}.
+         */
+        DOUBLE,
+
+        /**
+         * Values are stored in a {@code long[]}. Numeric cells must contain whole numbers.
+         */
+        LONG,
+
+        /**
+         * Values are stored in a {@code boolean[]}.
+         */
+        BOOLEAN,
+
+        /**
+         * Values are stored in a {@code String[]} with leading and trailing whitespace removed. Numeric cells are converted
+         * to text the way Excel displays them in the <i>General</i> format, booleans to {@code TRUE} or {@code FALSE}.
+         */
+        STRING;
+    }
+
+    private final int capacity;
+
+    private int      count        = 0;
+    private int[]    sheetColumns = new int[8];
+    private Type[]   types        = new Type[8];
+    private Object[] values       = new Object[8];
+    private long[][] validity     = new long[8][];
+
+    private final int[] rowNums;
+    private int         size = 0;
+
+    private int[]   positions = null; // the position of each sheet column in this batch or -1, set once the batch is in use
+    private boolean current   = false; // whether the current row has at least one value
+
+    /**
+     * Creates a new {@code ColumnBatch} which holds up to {@code capacity} rows.
+     *
+     * @param capacity the maximum number of rows in each batch
+     */
+    public ColumnBatch(final int capacity) {
+        checkArgument(capacity > 0, "capacity < 1");
+        this.capacity = capacity;
+        this.rowNums  = new int[capacity];
+    }
+
+    /**
+     * Adds a column to this batch.
+     *
+     * @param column the 0-based index of the sheet column
+     * @param type   the type of the column
+     * @return this {@code ColumnBatch} instance
+     * @throws IllegalStateException if this batch has already been passed to a reader
+     */
+    public ColumnBatch addColumn(final int column, final Type type) {
+        checkArgument(column >= 0, "column < 0");
+        checkNotNull(type, "type == null");
+        checkState(positions == null, "batch is in use");
+        for (int i = 0; i < count; i++)
+            checkArgument(sheetColumns[i] != column, "duplicate column: %s", column);
+
+        if (count == sheetColumns.length) {
+            sheetColumns = Arrays.copyOf(sheetColumns, count * 2);
+            types        = Arrays.copyOf(types, count * 2);
+            values       = Arrays.copyOf(values, count * 2);
+            validity     = Arrays.copyOf(validity, count * 2);
+        }
+
+        sheetColumns[count] = column;
+        types[count]        = type;
+        validity[count]     = new long[(capacity + 63) >>> 6];
+
+        switch (type) {
+        case DOUBLE:
+            values[count] = new double[capacity];
+            break;
+        case LONG:
+            values[count] = new long[capacity];
+            break;
+        case BOOLEAN:
+            values[count] = new boolean[capacity];
+            break;
+        default:
+            values[count] = new String[capacity];
+            break;
+        }
+
+        count++;
+        return this;
+    }
+
+    /**
+     * Adds a column to this batch.
+     *
+     * @param colref the letter reference of the sheet column
+     * @param type   the type of the column
+     * @return this {@code ColumnBatch} instance
+     * @throws IllegalStateException if this batch has already been passed to a reader
+     */
+    public ColumnBatch addColumn(final String colref, final Type type) {
+        checkNotNull(colref, "colref == null");
+        return addColumn(convertColStringToIndex(colref), type);
+    }
+
+    /**
+     * Returns the maximum number of rows in this batch.
+     *
+     * @return the maximum number of rows in this batch
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of rows in this batch.
+     *
+     * @return the number of rows in this batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of columns in this batch.
+     *
+     * @return the number of columns in this batch
+     */
+    public int getColumnCount() {
+        return count;
+    }
+
+    /**
+     * Returns the 0-based index of the sheet column read into the specified column of this batch.
+     *
+     * @param position the position of the column in this batch
+     * @return the 0-based index of the sheet column read into the specified column of this batch
+     */
+    public int getSheetColumn(final int position) {
+        checkElementIndex(position, count);
+        return sheetColumns[position];
+    }
+
+    /**
+     * Returns the type of the specified column.
+     *
+     * @param position the position of the column in this batch
+     * @return the type of the specified column
+     */
+    public Type getType(final int position) {
+        checkElementIndex(position, count);
+        return types[position];
+    }
+
+    /**
+     * Returns the 0-based index of the sheet row read into the specified row of this batch.
+     *
+     * @param row the index of the row in this batch
+     * @return the 0-based index of the sheet row read into the specified row of this batch
+     */
+    public int getRowNum(final int row) {
+        checkElementIndex(row, size);
+        return rowNums[row];
+    }
+
+    /**
+     * Returns {@code true} if the specified cell is blank.
+     *
+     * @param position the position of the column in this batch
+     * @param row      the index of the row in this batch
+     * @return {@code true} if the specified cell is blank
+     */
+    public boolean isNull(final int position, final int row) {
+        checkElementIndex(position, count);
+        checkElementIndex(row, size);
+        return (validity[position][row >>> 6] & 1L << row) == 0;
+    }
+
+    /**
+     * Returns the backing array of the specified {@link Type#DOUBLE DOUBLE} column. Only the first {@link #size()} elements
+     * are part of this batch.
+     *
+     * @param position the position of the column in this batch
+     * @return the backing array of the specified column
+     * @throws IllegalArgumentException if the column is not a {@code DOUBLE} column
+     */
+    public double[] getDoubles(final int position) {
+        checkType(position, Type.DOUBLE);
+        return (double[]) values[position];
+    }
+
+    /**
+     * Returns the backing array of the specified {@link Type#LONG LONG} column. Only the first {@link #size()} elements are
+     * part of this batch.
+     *
+     * @param position the position of the column in this batch
+     * @return the backing array of the specified column
+     * @throws IllegalArgumentException if the column is not a {@code LONG} column
+     */
+    public long[] getLongs(final int position) {
+        checkType(position, Type.LONG);
+        return (long[]) values[position];
+    }
+
+    /**
+     * Returns the backing array of the specified {@link Type#BOOLEAN BOOLEAN} column. Only the first {@link #size()}
+     * elements are part of this batch.
+     *
+     * @param position the position of the column in this batch
+     * @return the backing array of the specified column
+     * @throws IllegalArgumentException if the column is not a {@code BOOLEAN} column
+     */
+    public boolean[] getBooleans(final int position) {
+        checkType(position, Type.BOOLEAN);
+        return (boolean[]) values[position];
+    }
+
+    /**
+     * Returns the backing array of the specified {@link Type#STRING STRING} column. Only the first {@link #size()} elements
+     * are part of this batch.
+     *
+     * @param position the position of the column in this batch
+     * @return the backing array of the specified column
+     * @throws IllegalArgumentException if the column is not a {@code STRING} column
+     */
+    public String[] getStrings(final int position) {
+        checkType(position, Type.STRING);
+        return (String[]) values[position];
+    }
+
+    /**
+     * Returns the backing validity bitmap of the specified column. Bit {@code i % 64} of word {@code i / 64} is set if row
+     * {@code i} of the column is not blank.
+     *
+     * @param position the position of the column in this batch
+     * @return the backing validity bitmap of the specified column
+     */
+    public long[] getValidity(final int position) {
+        checkElementIndex(position, count);
+        return validity[position];
+    }
+
+    /**
+     * Locks the columns of this batch and returns a new {@code ReadOptions} which projects only its columns.
+     */
+    ReadOptions lock(final ReadOptions options) {
+        checkArgument(count > 0, "batch has no columns");
+
+        if (positions == null) {
+            int max = 0;
+            for (int i = 0; i < count; i++)
+                max = Math.max(max, sheetColumns[i]);
+
+            final int[] positions = new int[max + 1];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < count; i++)
+                positions[sheetColumns[i]] = i;
+
+            this.positions = positions;
+        }
+
+        return options.newReadOptions().setColumns(Arrays.copyOf(sheetColumns, count));
+    }
+
+    /**
+     * Returns the position of the specified sheet column in this batch or -1 if it is not part of this batch.
+     */
+    int positionOf(final int column) {
+        return column < positions.length ? positions[column] : -1;
+    }
+
+    /**
+     * Returns {@code true} if no more rows can be added.
+     */
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Removes all rows from this batch.
+     */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(validity[i], 0, (size + 63) >>> 6, 0L);
+            if (types[i] == Type.STRING)
+                Arrays.fill((String[]) values[i], 0, size, null); // do not retain the strings of the previous batch
+        }
+        size    = 0;
+        current = false;
+    }
+
+    /**
+     * Sets the value of the specified column of the current row.
+     */
+    void setDouble(final int position, final double value) {
+        switch (types[position]) {
+        case DOUBLE:
+            ((double[]) values[position])[size] = value;
+            break;
+        case LONG:
+            ((long[]) values[position])[size] = NumberParser.toLong(value);
+            break;
+        case STRING:
+            ((String[]) values[position])[size] = NumberToTextConverter.toText(value);
+            break;
+        default:
+            throw new IllegalArgumentException("not a boolean: " + value);
+        }
+        setValid(position);
+    }
+
+    /**
+     * Sets the value of the specified column of the current row.
+     */
+    void setBoolean(final int position, final boolean value) {
+        switch (types[position]) {
+        case BOOLEAN:
+            ((boolean[]) values[position])[size] = value;
+            break;
+        case STRING:
+            ((String[]) values[position])[size] = value ? "TRUE" : "FALSE";
+            break;
+        default:
+            throw new IllegalArgumentException("not a number: " + (value ? "TRUE" : "FALSE"));
+        }
+        setValid(position);
+    }
+
+    /**
+     * Parses and sets the value of the specified column of the current row. Whitespace is treated as a blank cell.
+     */
+    void setText(final int position, final CharSequence value) {
+        if (isWhitespace(value))
+            return;
+
+        switch (types[position]) {
+        case DOUBLE:
+            ((double[]) values[position])[size] = NumberParser.parseDouble(value);
+            break;
+        case LONG:
+            ((long[]) values[position])[size] = NumberParser.parseLong(value);
+            break;
+        case BOOLEAN:
+            ((boolean[]) values[position])[size] = parseBoolean(value);
+            break;
+        default:
+            ((String[]) values[position])[size] = value.toString().trim(); // trims the same characters as isWhitespace
+            break;
+        }
+        setValid(position);
+    }
+
+    /**
+     * Ends the current row. The row is added to this batch if at least one of its cells is not blank.
+     */
+    void endRow(final int rowNum) {
+        if (current)
+            rowNums[size++] = rowNum;
+        current = false;
+    }
+
+    private void setValid(final int position) {
+        validity[position][size >>> 6] |= 1L << size;
+        current = true;
+    }
+
+    private void checkType(final int position, final Type type) {
+        checkElementIndex(position, count);
+        checkArgument(types[position] == type, "not a %s column: %s", type, types[position]);
+    }
+
+    private static boolean isWhitespace(final CharSequence value) {
+        for (int i = 0; i < value.length(); i++)
+            if (value.charAt(i) > ' ')
+                return false;
+        return true;
+    }
+
+    private static boolean parseBoolean(final CharSequence value) {
+        int start = 0;
+        int end   = value.length();
+
+        while (start < end && value.charAt(start) <= ' ')
+            start++;
+        while (end > start && value.charAt(end - 1) <= ' ')
+            end--;
+
+        if (regionMatches(value, start, end, "true"))
+            return true;
+        else if (regionMatches(value, start, end, "false"))
+            return false;
+        else
+            throw new IllegalArgumentException("not a boolean: " + value);
+    }
+
+    private static boolean regionMatches(final CharSequence value, final int start, final int end, final String s) {
+        if (end - start != s.length())
+            return false;
+        for (int i = 0; i < s.length(); i++)
+            if (Character.toLowerCase(value.charAt(start + i)) != s.charAt(i))
+                return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,89 @@
+package software.leonov.cells;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a sheet into a {@link ColumnBatch}, one batch at a time. Readers are obtained from
+ * {@link Workbooks#readColumns(Path, ReadOptions, ColumnBatch)}.
+ * <p>
+ * Every call to {@link #next()} returns the same {@code ColumnBatch} instance, refilled with the next rows of the sheet.
+ * The file is closed once the last batch has been read or when {@link #close()} is called, whichever comes first.
+ *
+ * @author Zhenya Leonov
+ */
+public abstract class ColumnBatchReader implements Iterator<ColumnBatch>, Closeable {
+
+    /**
+     * The batch which is filled by this reader.
+     */
+    final ColumnBatch batch;
+
+    private boolean ready    = false;
+    private boolean finished = false;
+
+    ColumnBatchReader(final ColumnBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Returns {@code true} if there are more rows to read. If the current batch has already been returned by
+     * {@link #next()} it is cleared and refilled with the next rows of the sheet.
+     *
+     * @return {@code true} if there are more rows to read
+     * @throws UncheckedIOException if an I/O error occurs
+     */
+    @Override
+    public boolean hasNext() {
+        if (!ready && !finished)
+            try {
+                batch.clear();
+                fill();
+                if (batch.size() > 0)
+                    ready = true;
+                else {
+                    finished = true;
+                    close();
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        return ready;
+    }
+
+    /**
+     * Returns the {@code ColumnBatch} filled with the next rows of the sheet.
+     *
+     * @return the {@code ColumnBatch} filled with the next rows of the sheet
+     * @throws NoSuchElementException   if there are no more rows to read
+     * @throws UncheckedIOException     if an I/O error occurs
+     * @throws IllegalArgumentException if a cell cannot be converted to the type of its column
+     */
+    @Override
+    public ColumnBatch next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        ready = false;
+        return batch;
+    }
+
+    /**
+     * Returns {@code true} if the workbook uses the 1904 date system, which is needed to convert the serial dates read into
+     * {@link ColumnBatch.Type#DOUBLE DOUBLE} columns with {@link SerialDates}.
+     *
+     * @return {@code true} if the workbook uses the 1904 date system
+     */
+    public abstract boolean isDate1904();
+
+    /**
+     * Adds rows to the empty batch until it is full or the end of the sheet is reached.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    abstract void fill() throws IOException;
+
+}
@@ -0,0 +1,70 @@
+package software.leonov.cells;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * A per-sheet table of the indexes of the default column styles, used by {@link Sheets#getColumnStyle(Sheet, int)} to
+ * avoid searching the column definitions of <i>xlsx</i> sheets every time a cell is created.
+ * <p>
+ * Columns are resolved the first time they are looked up and updated by
+ * {@link Sheets#setColumnStyle(Sheet, int, org.apache.poi.ss.usermodel.CellStyle, boolean)}. Sheets are weakly
+ * referenced and compared by identity. Indexes are stored rather than styles, because POI styles strongly reference
+ * their workbook, which would keep the sheet from being garbage collected. Instances are not thread-safe, the same as
+ * the sheets they belong to.
+ *
+ * @author Zhenya Leonov
+ */
+final class ColumnStyles {
+
+    static final int UNRESOLVED = -2;
+    static final int NONE       = -1;
+
+    private static final ConcurrentMap<Sheet, ColumnStyles> SHEETS = new MapMaker().weakKeys().makeMap();
+
+    private int[] indexes = new int[0];
+
+    private ColumnStyles() {
+    }
+
+    /**
+     * Returns the table of the specified sheet.
+     *
+     * @param sheet the sheet
+     * @return the table of the specified sheet
+     */
+    static ColumnStyles of(final Sheet sheet) {
+        return SHEETS.computeIfAbsent(sheet, s -> new ColumnStyles());
+    }
+
+    /**
+     * Returns the index of the default style of the specified column, {@link #NONE} if the column has no default style, or
+     * {@link #UNRESOLVED} if it has not been looked up yet.
+     *
+     * @param column the 0-based column index
+     * @return the index of the default style of the specified column, {@link #NONE} or {@link #UNRESOLVED}
+     */
+    int get(final int column) {
+        return column < indexes.length ? indexes[column] : UNRESOLVED;
+    }
+
+    /**
+     * Records the index of the default style of the specified column.
+     *
+     * @param column the 0-based column index
+     * @param style  the index of the style or {@link #NONE}
+     */
+    void put(final int column, final int style) {
+        if (column >= indexes.length) {
+            final int length = indexes.length;
+            indexes = Arrays.copyOf(indexes, Math.max(column + 1, length * 2));
+            Arrays.fill(indexes, length, indexes.length, UNRESOLVED);
+        }
+        indexes[column] = style;
+    }
+
+}
@@ -0,0 +1,136 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Tracks the estimated width of the widest value of each column as cells are written, so that columns can be
+ * {@link Sheets#autoSizeColumns(org.apache.poi.ss.usermodel.Sheet, ColumnWidths) sized to fit} without measuring every
+ * cell again.
+ * <p>
+ * {@link Sheets#autoSizeColumns(org.apache.poi.ss.usermodel.Sheet)} measures every cell of the sheet with AWT, which is
+ * slow on large sheets, requires the fonts to be installed, and cannot see the rows an
+ * {@link org.apache.poi.xssf.streaming.SXSSFSheet SXSSFSheet} has already flushed to disk. A {@code ColumnWidths}
+ * instead estimates the width of the {@link Cells#formatValue(Cell) formatted value} of each cell from a precomputed table
+ * of character widths of the cell's font, at the time the cell is written. Cells can be tracked
+ * {@link #update(Cell) individually}, a {@link #update(Row) row} at a time, or automatically by a
+ * {@link RowWriter#setColumnWidths(ColumnWidths) RowWriter}.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final ColumnWidths widths = new ColumnWidths(workbook);
+ *   final RowWriter    writer = schema.compile(sheet).setColumnWidths(widths);
+ *   ...
+ *   Sheets.autoSizeColumns(sheet, widths);
+ * </pre>
+ *
+ * Unlike {@link org.apache.poi.ss.usermodel.Sheet#autoSizeColumn(int)} the content of merged cells is not ignored, and
+ * rotated text is measured as if it were horizontal. Instances are not thread-safe.
+ *
+ * @author Zhenya Leonov
+ */
+public final class ColumnWidths {
+
+    private final Workbook workbook;
+    private final float    unit; // the width of '0' in the default font, in points
+
+    private CharWidths[] fonts  = new CharWidths[8]; // by font index
+    private float[]      widths = new float[0];      // in points
+
+    /**
+     * Creates a new {@code ColumnWidths} for the cells of the specified workbook.
+     *
+     * @param workbook the workbook
+     */
+    public ColumnWidths(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+        this.workbook = workbook;
+        this.unit     = CharWidths.of(workbook.getFontAt(0)).digitWidth();
+    }
+
+    /**
+     * Updates the width of the column of the specified cell with the width of its formatted value. Blank cells are
+     * ignored.
+     *
+     * @param cell the cell
+     * @return this {@code ColumnWidths} instance
+     */
+    public ColumnWidths update(final Cell cell) {
+        checkNotNull(cell, "cell == null");
+        checkArgument(cell.getSheet().getWorkbook() == workbook, "cell belongs to a different workbook");
+
+        if (cell.getCellType() == CellType.BLANK)
+            return this;
+
+        final String value = Cells.formatValue(cell);
+        if (value == null)
+            return this;
+
+        final int   column = cell.getColumnIndex();
+        final float width  = fontOf(cell).width(value);
+
+        if (column >= widths.length)
+            widths = Arrays.copyOf(widths, Math.max(column + 1, widths.length * 2));
+        if (width > widths[column])
+            widths[column] = width;
+
+        return this;
+    }
+
+    /**
+     * Updates the widths of the columns of the cells of the specified row.
+     *
+     * @param row the row
+     * @return this {@code ColumnWidths} instance
+     */
+    public ColumnWidths update(final Row row) {
+        checkNotNull(row, "row == null");
+        for (final Cell cell : row)
+            update(cell);
+        return this;
+    }
+
+    /**
+     * Returns the estimated width of the widest value of the specified column in units of 1/256th of a character width,
+     * the unit of {@link org.apache.poi.ss.usermodel.Sheet#setColumnWidth(int, int)}, or 0 if no cells have been tracked.
+     *
+     * @param column the 0-based column index
+     * @return the estimated width of the widest value of the specified column in units of 1/256th of a character width
+     */
+    public int getWidth(final int column) {
+        checkArgument(column >= 0, "column < 0");
+        return column < widths.length ? (int) Math.ceil(widths[column] / unit * 256) : 0;
+    }
+
+    /**
+     * Returns the number of columns, the index of the last tracked column plus one.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        for (int i = widths.length - 1; i >= 0; i--)
+            if (widths[i] > 0)
+                return i + 1;
+        return 0;
+    }
+
+    private CharWidths fontOf(final Cell cell) {
+        final int index = cell.getCellStyle().getFontIndexAsInt();
+
+        if (index >= fonts.length)
+            fonts = Arrays.copyOf(fonts, Math.max(index + 1, fonts.length * 2));
+        if (fonts[index] == null)
+            fonts[index] = CharWidths.of(workbook.getFontAt(index));
+
+        return fonts[index];
+    }
+
+}
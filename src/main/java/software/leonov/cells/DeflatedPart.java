@@ -0,0 +1,123 @@
+package software.leonov.cells;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * The compressed data of a zip entry, written in advance to a temporary file so that it can be produced by one thread
+ * and stored in the zip file by another.
+ * <p>
+ * The compressed data is sync flushed before the deflate stream is ended, so that the part can also be stored in the
+ * middle of an entry by copying only its first {@link #getSyncedLength()} bytes.
+ *
+ * @author Zhenya Leonov
+ */
+final class DeflatedPart {
+
+    private final File                  file;
+    private final OutputStream          out;
+    private final DeflatingOutputStream deflater;
+    private long                        syncedLength = 0;
+    private boolean                     finished     = false;
+
+    /**
+     * Creates a new {@code DeflatedPart} which stores its compressed data in the specified file.
+     *
+     * @param file  the file
+     * @param level the compression level, from 0 to 9 or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if an I/O error occurs
+     */
+    DeflatedPart(final File file, final int level) throws IOException {
+        this(file, Files.newOutputStream(file.toPath()), level);
+    }
+
+    /**
+     * Creates a new {@code DeflatedPart} which writes its compressed data to the specified stream, which must write to
+     * the specified file.
+     *
+     * @param file  the file
+     * @param out   the output stream of the file
+     * @param level the compression level, from 0 to 9 or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+     */
+    DeflatedPart(final File file, final OutputStream out, final int level) {
+        this.file     = file;
+        this.out      = new BufferedOutputStream(out, 1 << 16);
+        this.deflater = new DeflatingOutputStream(this.out, level);
+    }
+
+    /**
+     * Returns the stream which compresses the data written to it into this part. Closing the stream
+     * {@link #finish() finishes} this part.
+     */
+    OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                deflater.write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                deflater.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                finish();
+            }
+        };
+    }
+
+    /**
+     * Completes the compressed data and closes the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        try {
+            deflater.syncFlush();
+            syncedLength = deflater.getCompressedSize();
+            deflater.finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getCrc() {
+        return deflater.getCrc();
+    }
+
+    long getSize() {
+        return deflater.getSize();
+    }
+
+    /**
+     * Returns the length of the complete deflate stream, which is the length of the file.
+     */
+    long getCompressedSize() {
+        return deflater.getCompressedSize();
+    }
+
+    /**
+     * Returns the length of the compressed data up to, but not including, the end of the deflate stream.
+     */
+    long getSyncedLength() {
+        return syncedLength;
+    }
+
+}
@@ -0,0 +1,252 @@
+package software.leonov.cells;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.common.base.Throwables;
+
+/**
+ * An output stream which compresses data into raw deflate format, without a zlib or gzip wrapper, the way it is stored
+ * in a zip entry. Keeps track of the CRC-32 and the uncompressed and compressed sizes needed for the zip headers.
+ * <p>
+ * With a parallelism greater than 1 the data is split into blocks which are compressed concurrently in the common
+ * {@code ForkJoinPool}. Each block is primed with the last 32 KB of the previous block and ends with a sync flush, which
+ * aligns it to a byte boundary, so the compressed blocks can be concatenated into a single deflate stream.
+ * <p>
+ * {@link #close()} does not close the underlying stream, {@link #finish()} must be called to complete the data.
+ *
+ * @author Zhenya Leonov
+ */
+final class DeflatingOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE      = 1 << 17;
+    private static final int DICTIONARY_SIZE = 1 << 15;
+
+    private final OutputStream out;
+    private final int          level;
+    private final int          parallelism;
+    private final Deflater     deflater;
+    private final CRC32        crc    = new CRC32();
+    private final byte[]       buffer = new byte[1 << 16];
+
+    private long    size           = 0;
+    private long    compressedSize = 0;
+    private boolean finished       = false;
+
+    // Only used when compressing in parallel
+    private byte[]                                 block;
+    private int                                    blockLength = 0;
+    private byte[]                                 previous    = null;
+    private final Deque<CompletableFuture<byte[]>> pending     = new ArrayDeque<>();
+
+    /**
+     * Creates a new {@code DeflatingOutputStream} which writes compressed data to the specified stream.
+     *
+     * @param out   the underlying stream
+     * @param level the compression level, from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    DeflatingOutputStream(final OutputStream out, final int level) {
+        this(out, level, 1);
+    }
+
+    /**
+     * Creates a new {@code DeflatingOutputStream} which writes compressed data to the specified stream, compressing up to
+     * {@code parallelism} blocks concurrently.
+     *
+     * @param out         the underlying stream
+     * @param level       the compression level, from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param parallelism the maximum number of blocks compressed concurrently
+     */
+    DeflatingOutputStream(final OutputStream out, final int level, final int parallelism) {
+        this.out         = out;
+        this.level       = level;
+        this.parallelism = parallelism;
+        this.deflater    = parallelism > 1 ? null : new Deflater(level, true);
+        this.block       = parallelism > 1 ? new byte[BLOCK_SIZE] : null;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (finished)
+            throw new IOException("stream finished");
+
+        crc.update(b, off, len);
+        size += len;
+
+        if (deflater != null) {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput())
+                deflate();
+        } else
+            for (int i = off, end = off + len; i < end;) {
+                final int n = Math.min(end - i, BLOCK_SIZE - blockLength);
+                System.arraycopy(b, i, block, blockLength, n);
+                blockLength += n;
+                i           += n;
+                if (blockLength == BLOCK_SIZE)
+                    submit(false);
+            }
+    }
+
+    /**
+     * Compresses all the data written so far and aligns the compressed data to a byte boundary with an empty stored block,
+     * without ending the deflate stream. Data compressed separately can be appended at this point. Only supported when
+     * compressing on the writing thread.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void syncFlush() throws IOException {
+        if (finished)
+            throw new IOException("stream finished");
+        if (deflater == null)
+            throw new IllegalStateException("parallel compression");
+
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, n);
+            compressedSize += n;
+        } while (n == buffer.length);
+    }
+
+    /**
+     * Completes the compressed data and releases the deflater. Does not close the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        if (deflater != null)
+            try {
+                deflater.finish();
+                while (!deflater.finished())
+                    deflate();
+            } finally {
+                deflater.end();
+            }
+        else {
+            submit(true);
+            while (!pending.isEmpty())
+                writeBlock(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of the uncompressed data.
+     */
+    long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the number of uncompressed bytes.
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of compressed bytes.
+     */
+    long getCompressedSize() {
+        return compressedSize;
+    }
+
+    @Override
+    public void close() {
+        // the underlying stream belongs to the caller
+    }
+
+    private void deflate() throws IOException {
+        final int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+        if (n > 0) {
+            out.write(buffer, 0, n);
+            compressedSize += n;
+        }
+    }
+
+    private void submit(final boolean last) throws IOException {
+        final byte[] input      = last ? Arrays.copyOf(block, blockLength) : block;
+        final byte[] dictionary = previous;
+        final int    level      = this.level;
+
+        pending.addLast(CompletableFuture.supplyAsync(() -> deflate(input, dictionary, level, last), ForkJoinPool.commonPool()));
+
+        previous    = input;
+        block       = last ? null : new byte[BLOCK_SIZE];
+        blockLength = 0;
+
+        while (pending.size() >= parallelism)
+            writeBlock(pending.removeFirst());
+    }
+
+    private void writeBlock(final CompletableFuture<byte[]> future) throws IOException {
+        final byte[] compressed;
+        try {
+            compressed = future.join();
+        } catch (final CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+        out.write(compressed);
+        compressedSize += compressed.length;
+    }
+
+    /**
+     * Compresses the specified data into raw deflate format. If {@code last} is {@code false} the data ends with a sync
+     * flush rather than the end of the deflate stream, so that more compressed data can be appended.
+     *
+     * @param input      the data to compress
+     * @param dictionary the data which precedes the input, or {@code null}, of which at most the last 32 KB are used
+     * @param level      the compression level
+     * @param last       whether the compressed data ends the deflate stream
+     * @return the compressed data
+     */
+    static byte[] deflate(final byte[] input, final byte[] dictionary, final int level, final boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                final int length = Math.min(dictionary.length, DICTIONARY_SIZE);
+                deflater.setDictionary(dictionary, dictionary.length - length, length);
+            }
+            deflater.setInput(input);
+
+            final ByteArrayOutputStream out    = new ByteArrayOutputStream(input.length / 2 + 64);
+            final byte[]                buffer = new byte[1 << 16];
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished())
+                    out.write(buffer, 0, deflater.deflate(buffer));
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package software.leonov.cells;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * Reads a single sheet of an <i>xls</i> file into a {@link ColumnBatch}.
+ * <p>
+ * Records are pulled from a {@link RecordFactoryInputStream} as in {@link HSSFRowRecordIterator}, but no format
+ * tracking is performed: the {@code double} stored in a {@link NumberRecord} or {@link FormulaRecord} is copied
+ * directly into the batch. Cells outside of the batch's columns, as well as rows outside of the
+ * {@link ReadOptions#setRows(int, int) row range}, are discarded as soon as they are read.
+ *
+ * @author Zhenya Leonov
+ */
+final class HSSFColumnBatchReader extends ColumnBatchReader {
+
+    private final POIFSFileSystem          fs;
+    private final InputStream              in;
+    private final RecordFactoryInputStream records;
+
+    private final ReadOptions options;
+
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+    private BoundSheetRecord[]           orderedSheets;
+    private SSTRecord                    sst;
+    private boolean                      date1904 = false; // read from the workbook globals before the target sheet
+
+    private int     depth    = 0;  // the nesting level of BOF/EOF substreams
+    private int     sheet    = -1; // the 0-based index of the current top level sheet substream
+    private boolean inTarget = false;
+    private boolean done     = false;
+    private boolean closed   = false;
+
+    private int    rowNum          = -1;
+    private int    formulaPosition = -1;   // the position of a formula whose string value is in the next StringRecord
+    private Record pending         = null; // the first cell of a row which did not fit into the previous batch
+
+    /**
+     * Creates a new reader which fills the specified batch from the specified sheet.
+     *
+     * @param file    the <i>xls</i> file
+     * @param options the read options
+     * @param batch   the batch to fill
+     * @throws IOException if an I/O error occurs
+     */
+    HSSFColumnBatchReader(final File file, final ReadOptions options, final ColumnBatch batch) throws IOException {
+        super(batch);
+        this.options = batch.lock(options);
+
+        fs = new POIFSFileSystem(file, true);
+
+        try {
+            in      = fs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot()));
+            records = new RecordFactoryInputStream(in, false);
+
+            // Skip the workbook globals and any preceding sheets so that a missing sheet is reported right away
+            while (!inTarget && !done)
+                pump();
+        } catch (final IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+
+        if (!inTarget) {
+            close();
+            final String name = this.options.getSheetName();
+            throw new IllegalArgumentException(name == null ? "sheet index out of range: " + this.options.getSheetIndex() : "sheet not found: " + name);
+        }
+    }
+
+    @Override
+    void fill() throws IOException {
+        if (pending != null) {
+            final Record record = pending;
+            pending = null;
+            processCell(record);
+        }
+
+        while (!done && !closed && pending == null)
+            pump();
+    }
+
+    @Override
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            fs.close();
+        }
+    }
+
+    private void pump() {
+        final Record record = records.nextRecord();
+        if (record == null)
+            done = true;
+        else
+            processRecord(record);
+    }
+
+    private void processRecord(final Record record) {
+        switch (record.getSid()) {
+        case BOFRecord.sid:
+            if (depth++ == 0 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK)
+                inTarget = isTarget(++sheet);
+            break;
+        case EOFRecord.sid:
+            if (--depth == 0 && inTarget) {
+                batch.endRow(rowNum);
+                inTarget = false;
+                done     = true;
+            }
+            break;
+        case BoundSheetRecord.sid:
+            boundSheets.add((BoundSheetRecord) record);
+            break;
+        case SSTRecord.sid:
+            sst = (SSTRecord) record;
+            break;
+        case DateWindow1904Record.sid:
+            date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+            break;
+        default:
+            if (inTarget && depth == 1)
+                processCell(record);
+        }
+    }
+
+    private void processCell(final Record record) {
+        if (record.getSid() == StringRecord.sid) {
+            if (formulaPosition >= 0) {
+                batch.setText(formulaPosition, ((StringRecord) record).getString());
+                formulaPosition = -1;
+            }
+            return;
+        } else if (!(record instanceof CellValueRecordInterface))
+            return;
+
+        final CellValueRecordInterface cell = (CellValueRecordInterface) record;
+        if (cell.getRow() > options.getLastRow()) {
+            batch.endRow(rowNum);
+            done = true;
+            return;
+        }
+
+        final int position = batch.positionOf(cell.getColumn());
+        if (cell.getRow() < options.getFirstRow() || position < 0)
+            return;
+
+        if (cell.getRow() != rowNum) {
+            batch.endRow(rowNum);
+            rowNum = cell.getRow();
+            if (batch.isFull()) {
+                pending = record;
+                return;
+            }
+        }
+
+        switch (record.getSid()) {
+        case NumberRecord.sid:
+            batch.setDouble(position, ((NumberRecord) record).getValue());
+            break;
+        case LabelSSTRecord.sid:
+            batch.setText(position, sst.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+            break;
+        case LabelRecord.sid:
+            batch.setText(position, ((LabelRecord) record).getValue());
+            break;
+        case BoolErrRecord.sid:
+            final BoolErrRecord boolErr = (BoolErrRecord) record;
+            if (boolErr.isBoolean())
+                batch.setBoolean(position, boolErr.getBooleanValue());
+            break;
+        case FormulaRecord.sid:
+            final FormulaRecord formula = (FormulaRecord) record;
+            if (formula.hasCachedResultString())
+                formulaPosition = position;
+            else
+                switch (CellType.forInt(formula.getCachedResultType())) {
+                case BOOLEAN:
+                    batch.setBoolean(position, formula.getCachedBooleanValue());
+                    break;
+                case NUMERIC:
+                    batch.setDouble(position, formula.getValue());
+                    break;
+                default:
+                    break;
+                }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private boolean isTarget(final int sheet) {
+        final String name = options.getSheetName();
+        if (name == null)
+            return sheet == options.getSheetIndex();
+
+        if (orderedSheets == null)
+            orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+
+        return sheet < orderedSheets.length && name.equalsIgnoreCase(orderedSheets[sheet].getSheetname());
+    }
+
+}
@@ -0,0 +1,272 @@
+package software.leonov.cells;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+/**
+ * Reads the rows of a single sheet of an <i>xls</i> file using the {@link HSSFListener HSSF event model}.
+ * <p>
+ * {@link HSSFEventFactory} pushes every record in the workbook through its listeners in one go. Instead, this iterator
+ * pulls records from a {@link RecordFactoryInputStream}, which is what {@code HSSFEventFactory} uses internally, and
+ * forwards them to a {@link FormatTrackingHSSFListener} until a complete row is available. The file is accessed in
+ * place. Only the current row, the shared strings table, and the cell formats are ever held in memory.
+ * <p>
+ * Cells outside of the {@link ReadOptions#setColumns(int...) projected columns} or before the
+ * {@link ReadOptions#setRows(int, int) first row} are discarded before they are formatted. Once the last row has been
+ * read, or the {@link ReadOptions#setStopCondition(int, java.util.function.Predicate) stop condition} is satisfied, the
+ * file is closed and the remaining records are never read.
+ *
+ * @author Zhenya Leonov
+ */
+final class HSSFRowRecordIterator extends RowRecordIterator implements HSSFListener {
+
+    private final POIFSFileSystem            fs;
+    private final InputStream                in;
+    private final RecordFactoryInputStream   records;
+    private final FormatTrackingHSSFListener formatter;
+
+    private final ReadOptions options;
+
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+    private BoundSheetRecord[]           orderedSheets;
+    private SSTRecord                    sst;
+
+    private int     depth    = 0;  // the nesting level of BOF/EOF substreams
+    private int     sheet    = -1; // the 0-based index of the current top level sheet substream
+    private boolean inTarget = false;
+    private boolean done     = false;
+
+    private final RowRecord.Buffer buffer         = new RowRecord.Buffer();
+    private int                    rowNum         = -1;
+    private int                    formulaColumn  = -1; // the column of a formula whose string value is in the next StringRecord
+    private String                 key            = null; // the value of the key column of the current row
+    private RowRecord              next           = null;
+    private boolean                closed         = false;
+
+    /**
+     * Creates a new iterator over the rows of the specified sheet.
+     *
+     * @param file    the <i>xls</i> file
+     * @param options the read options
+     * @throws IOException if an I/O error occurs
+     */
+    HSSFRowRecordIterator(final File file, final ReadOptions options) throws IOException {
+        this.options = options.newReadOptions();
+
+        fs = new POIFSFileSystem(file, true);
+
+        try {
+            in        = fs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot()));
+            records   = new RecordFactoryInputStream(in, false);
+            formatter = new FormatTrackingHSSFListener(this);
+
+            // Skip the workbook globals and any preceding sheets so that a missing sheet is reported right away
+            while (!inTarget && !done)
+                pump();
+        } catch (final IOException | RuntimeException e) {
+            fs.close();
+            throw e;
+        }
+
+        if (!inTarget) {
+            close();
+            final String name = this.options.getSheetName();
+            throw new IllegalArgumentException(name == null ? "sheet index out of range: " + this.options.getSheetIndex() : "sheet not found: " + name);
+        }
+    }
+
+    @Override
+    protected RowRecord computeNext() {
+        try {
+            while (next == null) {
+                if (done || closed) {
+                    close();
+                    return endOfData();
+                }
+                pump();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final RowRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            fs.close();
+        }
+    }
+
+    private void pump() {
+        final Record record = records.nextRecord();
+        if (record == null)
+            done = true;
+        else
+            formatter.processRecord(record);
+    }
+
+    @Override
+    public void processRecord(final Record record) {
+        switch (record.getSid()) {
+        case BOFRecord.sid:
+            if (depth++ == 0 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK)
+                inTarget = isTarget(++sheet);
+            break;
+        case EOFRecord.sid:
+            if (--depth == 0 && inTarget) {
+                endRow();
+                inTarget = false;
+                done     = true;
+            }
+            break;
+        case BoundSheetRecord.sid:
+            boundSheets.add((BoundSheetRecord) record);
+            break;
+        case SSTRecord.sid:
+            sst = (SSTRecord) record;
+            break;
+        default:
+            if (inTarget && depth == 1)
+                processCell(record);
+        }
+    }
+
+    private void processCell(final Record record) {
+        if (record instanceof CellValueRecordInterface) {
+            final CellValueRecordInterface cell = (CellValueRecordInterface) record;
+            if (cell.getRow() > options.getLastRow()) {
+                endRow();
+                done = true;
+                return;
+            } else if (cell.getRow() < options.getFirstRow())
+                return;
+
+            // Every cell, including blank and unread cells, marks its row as present for the stop condition
+            if (cell.getRow() != rowNum) {
+                endRow();
+                rowNum = cell.getRow();
+            }
+
+            if (!options.isRead(cell.getColumn()))
+                return;
+        }
+
+        switch (record.getSid()) {
+        case NumberRecord.sid:
+            add((CellValueRecordInterface) record, formatter.formatNumberDateCell((NumberRecord) record));
+            break;
+        case LabelSSTRecord.sid:
+            final LabelSSTRecord label = (LabelSSTRecord) record;
+            add(label, sst.getString(label.getSSTIndex()).getString());
+            break;
+        case LabelRecord.sid:
+            add((LabelRecord) record, ((LabelRecord) record).getValue());
+            break;
+        case BoolErrRecord.sid:
+            final BoolErrRecord boolErr = (BoolErrRecord) record;
+            add(boolErr, boolErr.isBoolean() ? boolErr.getBooleanValue() ? "TRUE" : "FALSE" : FormulaError.forInt(boolErr.getErrorValue()).getString());
+            break;
+        case FormulaRecord.sid:
+            final FormulaRecord formula = (FormulaRecord) record;
+            if (formula.hasCachedResultString()) {
+                add(formula, null);
+                formulaColumn = formula.getColumn();
+            } else
+                add(formula, formatFormula(formula));
+            break;
+        case StringRecord.sid:
+            if (formulaColumn >= 0) {
+                add(formulaColumn, ((StringRecord) record).getString());
+                formulaColumn = -1;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private String formatFormula(final FormulaRecord formula) {
+        switch (CellType.forInt(formula.getCachedResultType())) {
+        case BOOLEAN:
+            return formula.getCachedBooleanValue() ? "TRUE" : "FALSE";
+        case ERROR:
+            return FormulaError.forInt(formula.getCachedErrorValue()).getString();
+        default:
+            return formatter.formatNumberDateCell(formula);
+        }
+    }
+
+    private void add(final CellValueRecordInterface cell, final String value) {
+        add(cell.getColumn(), value);
+    }
+
+    private void add(final int column, final String value) {
+        if (done)
+            return;
+        if (column == options.getKeyColumn())
+            key = value;
+        if (options.isProjected(column))
+            buffer.add(column, value);
+    }
+
+    private void endRow() {
+        final String value = key;
+        key = null;
+
+        if (rowNum < 0)
+            return;
+
+        if (options.isStopRow(value)) {
+            done = true;
+            buffer.clear();
+        } else if (!buffer.isEmpty())
+            next = buffer.build(rowNum);
+    }
+
+    private boolean isTarget(final int sheet) {
+        final String name = options.getSheetName();
+        if (name == null)
+            return sheet == options.getSheetIndex();
+
+        if (orderedSheets == null)
+            orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+
+        return sheet < orderedSheets.length && name.equalsIgnoreCase(orderedSheets[sheet].getSheetname());
+    }
+
+}
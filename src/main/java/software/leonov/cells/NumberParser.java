@@ -0,0 +1,161 @@
+package software.leonov.cells;
+
+/**
+ * Allocation-free parsing of decimal numbers from character sequences.
+ * <p>
+ * Values whose significant digits form an integer no greater than 2<sup>53</sup> (every value with up to 15
+ * significant digits, and most with 16) and whose decimal exponent is no greater than 22 in magnitude, which covers
+ * nearly every value found in a spreadsheet, are converted exactly using a single floating-point multiplication or
+ * division (Clinger's fast path). All other values fall back to {@link Double#parseDouble(String)}.
+ *
+ * @author Zhenya Leonov
+ */
+final class NumberParser {
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parses the specified characters as a {@code double}. Leading and trailing whitespace is ignored.
+     *
+     * @param chars the characters to parse
+     * @return the parsed value
+     * @throws NumberFormatException if the characters do not represent a decimal number
+     */
+    static double parseDouble(final CharSequence chars) {
+        int start = 0;
+        int end   = chars.length();
+
+        while (start < end && chars.charAt(start) <= ' ')
+            start++;
+        while (end > start && chars.charAt(end - 1) <= ' ')
+            end--;
+
+        if (start == end)
+            throw new NumberFormatException("empty String");
+
+        int     i        = start;
+        boolean negative = false;
+
+        if (chars.charAt(i) == '-' || chars.charAt(i) == '+')
+            negative = chars.charAt(i++) == '-';
+
+        long    mantissa = 0;
+        int     digits   = 0; // significant digits accumulated in the mantissa
+        int     exponent = 0;
+        boolean any      = false;
+
+        for (; i < end && isDigit(chars.charAt(i)); i++, any = true)
+            if (digits > 0 || chars.charAt(i) != '0') {
+                mantissa = mantissa * 10 + chars.charAt(i) - '0';
+                if (++digits > 18)
+                    return fallback(chars, start, end);
+            }
+
+        if (i < end && chars.charAt(i) == '.')
+            for (i++; i < end && isDigit(chars.charAt(i)); i++, any = true) {
+                exponent--;
+                if (digits > 0 || chars.charAt(i) != '0') {
+                    mantissa = mantissa * 10 + chars.charAt(i) - '0';
+                    if (++digits > 18)
+                        return fallback(chars, start, end);
+                }
+            }
+
+        if (!any)
+            throw new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+
+        if (i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            boolean negativeExponent = false;
+            if (++i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+'))
+                negativeExponent = chars.charAt(i++) == '-';
+
+            if (i == end)
+                throw new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+
+            int value = 0;
+            for (; i < end && isDigit(chars.charAt(i)); i++)
+                if (value < 10000)
+                    value = value * 10 + chars.charAt(i) - '0';
+
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (i != end)
+            throw new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+
+        if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+            return fallback(chars, start, end);
+
+        final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the specified characters as a {@code long}. Leading and trailing whitespace is ignored. Integers are parsed
+     * exactly over the full range of a {@code long}. Values written in decimal or scientific notation (such as
+     * {@code 12.0} or {@code 1.2E3}) are accepted if they represent a whole number, and are subject to the precision of a
+     * {@code double}.
+     *
+     * @param chars the characters to parse
+     * @return the parsed value
+     * @throws NumberFormatException if the characters do not represent a whole number within the range of a {@code long}
+     */
+    static long parseLong(final CharSequence chars) {
+        int start = 0;
+        int end   = chars.length();
+
+        while (start < end && chars.charAt(start) <= ' ')
+            start++;
+        while (end > start && chars.charAt(end - 1) <= ' ')
+            end--;
+
+        int     i        = start;
+        boolean negative = false;
+
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+'))
+            negative = chars.charAt(i++) == '-';
+
+        if (i == end)
+            return toLong(parseDouble(chars));
+
+        for (int j = i; j < end; j++)
+            if (!isDigit(chars.charAt(j)))
+                return toLong(parseDouble(chars)); // decimal or scientific notation
+
+        if (end - i > 18) // may overflow, parse exactly
+            return Long.parseLong(chars.subSequence(start, end).toString());
+
+        long value = 0;
+        for (; i < end; i++)
+            value = value * 10 + chars.charAt(i) - '0';
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the specified value as a {@code long}.
+     *
+     * @param value the value
+     * @return the specified value as a {@code long}
+     * @throws NumberFormatException if the value is not a whole number within the range of a {@code long}
+     */
+    static long toLong(final double value) {
+        if (value != Math.rint(value) || value < Long.MIN_VALUE || value >= 0x1p63)
+            throw new NumberFormatException("not a whole number: " + value);
+        return (long) value;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static double fallback(final CharSequence chars, final int start, final int end) {
+        return Double.parseDouble(chars.subSequence(start, end).toString());
+    }
+
+}
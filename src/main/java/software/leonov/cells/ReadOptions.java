@@ -0,0 +1,290 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.emptyToNull;
+import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
+import static software.leonov.common.base.Str.trim;
+
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+/**
+ * Options which control how a sheet is read by the streaming methods in {@link Workbooks}, such as
+ * {@link Workbooks#stream(Path, ReadOptions)}.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final ReadOptions options = new ReadOptions()
+ *                         .setSheet("Orders")
+ *                         .setColumns("A", "C", "AF");
+ *
+ *   try (final Stream&lt;RowRecord&gt; rows = Workbooks.stream(path, options)) {
+ *       ...
+ *   }
+ * </pre>
+ *
+ * Instances are reusable. The streaming methods take a snapshot of the current settings, subsequent changes do not
+ * affect streams which have already been opened.
+ *
+ * @author Zhenya Leonov
+ */
+public final class ReadOptions {
+
+    private int    sheetIndex = 0;
+    private String sheetName  = null;
+
+    // A bitmap of the projected columns or null if all columns are read
+    private long[] columns = null;
+
+    private int firstRow = 0;
+    private int lastRow  = Integer.MAX_VALUE;
+
+    private int                       keyColumn     = -1;
+    private Predicate<? super String> stopCondition = null;
+
+    /**
+     * Creates a new {@code ReadOptions} which reads every column of the first sheet.
+     */
+    public ReadOptions() {
+    }
+
+    /**
+     * Clears all settings, returning this instance to its initial state.
+     *
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions clear() {
+        this.sheetIndex    = 0;
+        this.sheetName     = null;
+        this.columns       = null;
+        this.firstRow      = 0;
+        this.lastRow       = Integer.MAX_VALUE;
+        this.keyColumn     = -1;
+        this.stopCondition = null;
+        return this;
+    }
+
+    /**
+     * Sets the sheet to read.
+     *
+     * @param index the 0-based index of the sheet
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setSheet(final int index) {
+        checkArgument(index >= 0, "sheet index < 0");
+        this.sheetIndex = index;
+        this.sheetName  = null;
+        return this;
+    }
+
+    /**
+     * Sets the sheet to read.
+     *
+     * @param name the name of the sheet
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setSheet(final String name) {
+        checkNotNull(name, "name == null");
+        this.sheetIndex = -1;
+        this.sheetName  = name;
+        return this;
+    }
+
+    /**
+     * Restricts reading to the specified columns. Cells outside of the specified columns are skipped as they are
+     * encountered in the file, before they are parsed or formatted.
+     * <p>
+     * Calling this method with no arguments reads every column.
+     *
+     * @param indexes the 0-based indexes of the columns to read
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setColumns(final int... indexes) {
+        checkNotNull(indexes, "indexes == null");
+
+        if (indexes.length == 0) {
+            this.columns = null;
+            return this;
+        }
+
+        int max = 0;
+        for (final int index : indexes) {
+            checkArgument(index >= 0, "index < 0");
+            max = Math.max(max, index);
+        }
+
+        final long[] columns = new long[(max >>> 6) + 1];
+        for (final int index : indexes)
+            columns[index >>> 6] |= 1L << index;
+
+        this.columns = columns;
+        return this;
+    }
+
+    /**
+     * Restricts reading to the specified columns. Cells outside of the specified columns are skipped as they are
+     * encountered in the file, before they are parsed or formatted.
+     * <p>
+     * Calling this method with no arguments reads every column.
+     *
+     * @param colrefs the letter references of the columns to read
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setColumns(final String... colrefs) {
+        checkNotNull(colrefs, "colrefs == null");
+
+        final int[] indexes = new int[colrefs.length];
+        for (int i = 0; i < colrefs.length; i++) {
+            checkNotNull(colrefs[i], "colref == null");
+            indexes[i] = convertColStringToIndex(colrefs[i]);
+        }
+
+        return setColumns(indexes);
+    }
+
+    /**
+     * Restricts reading to the specified range of rows. Rows before {@code firstRow} are skipped without parsing their
+     * cells. Once a row after {@code lastRow} is encountered reading stops and the sheet is closed, the remainder of the
+     * file is never parsed.
+     * <p>
+     * For example {@code setRows(0, 99)} reads only the first 100 rows, regardless of the size of the sheet.
+     *
+     * @param firstRow the 0-based index of the first row to read (inclusive)
+     * @param lastRow  the 0-based index of the last row to read (inclusive)
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setRows(final int firstRow, final int lastRow) {
+        checkArgument(firstRow >= 0, "firstRow < 0");
+        checkArgument(lastRow >= firstRow, "lastRow < firstRow");
+        this.firstRow = firstRow;
+        this.lastRow  = lastRow;
+        return this;
+    }
+
+    /**
+     * Stops reading at the first row whose formatted value in the key column satisfies the specified condition. That row
+     * is not returned and the remainder of the file is never parsed.
+     * <p>
+     * The condition is evaluated for every row present in the file, with a {@code null} value if the key column is blank,
+     * including rows whose cells are all blank. Rows which have never been written to are not present in the file and are
+     * not evaluated. The key column is always read, but it is only included in the returned rows if it is one of the
+     * {@link #setColumns(int...) projected columns}.
+     * <p>
+     * For example, if a sheet is sorted by the key column, {@code setStopCondition(0, key -> key == null || key.compareTo("M") >= 0)}
+     * reads only the rows whose key starts with the letters A through L.
+     *
+     * @param column    the 0-based index of the key column
+     * @param condition the condition which ends reading when satisfied
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setStopCondition(final int column, final Predicate<? super String> condition) {
+        checkArgument(column >= 0, "column < 0");
+        checkNotNull(condition, "condition == null");
+        this.keyColumn     = column;
+        this.stopCondition = condition;
+        return this;
+    }
+
+    /**
+     * Stops reading at the first row whose formatted value in the key column satisfies the specified condition.
+     * <p>
+     * See {@link #setStopCondition(int, Predicate)} for further details.
+     *
+     * @param colref    the letter reference of the key column
+     * @param condition the condition which ends reading when satisfied
+     * @return this {@code ReadOptions} instance
+     */
+    public ReadOptions setStopCondition(final String colref, final Predicate<? super String> condition) {
+        checkNotNull(colref, "colref == null");
+        return setStopCondition(convertColStringToIndex(colref), condition);
+    }
+
+    /**
+     * Returns a new {@code ReadOptions} instance populated with the current settings of {@code this} {@code ReadOptions}.
+     *
+     * @return a new {@code ReadOptions} instance populated with the current settings of {@code this} {@code ReadOptions}
+     */
+    public ReadOptions newReadOptions() {
+        final ReadOptions options = new ReadOptions();
+
+        options.sheetIndex    = sheetIndex;
+        options.sheetName     = sheetName;
+        options.columns       = columns == null ? null : columns.clone();
+        options.firstRow      = firstRow;
+        options.lastRow       = lastRow;
+        options.keyColumn     = keyColumn;
+        options.stopCondition = stopCondition;
+
+        return options;
+    }
+
+    /**
+     * Returns the 0-based index of the sheet to read or -1 if the sheet is specified by name.
+     */
+    int getSheetIndex() {
+        return sheetIndex;
+    }
+
+    /**
+     * Returns the name of the sheet to read or {@code null} if the sheet is specified by index.
+     */
+    String getSheetName() {
+        return sheetName;
+    }
+
+    /**
+     * Returns {@code true} if the specified column should be included in the returned rows.
+     */
+    boolean isProjected(final int column) {
+        if (columns == null)
+            return true;
+        final int word = column >>> 6;
+        return column >= 0 && word < columns.length && (columns[word] & 1L << column) != 0;
+    }
+
+    /**
+     * Returns {@code true} if the specified column should be read, because it is projected or it is the key column of the
+     * stop condition.
+     */
+    boolean isRead(final int column) {
+        return isProjected(column) || stopCondition != null && column == keyColumn;
+    }
+
+    /**
+     * Returns the 0-based index of the key column of the stop condition or -1 if no stop condition has been set.
+     */
+    int getKeyColumn() {
+        return stopCondition == null ? -1 : keyColumn;
+    }
+
+    /**
+     * Returns the 0-based index of the first row to read.
+     */
+    int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Returns the 0-based index of the last row to read.
+     */
+    int getLastRow() {
+        return lastRow;
+    }
+
+    /**
+     * Returns {@code true} if a stop condition has been set.
+     */
+    boolean hasStopCondition() {
+        return stopCondition != null;
+    }
+
+    /**
+     * Returns {@code true} if reading should stop at a row with the specified formatted value in the key column.
+     */
+    boolean isStopRow(final String key) {
+        return stopCondition != null && stopCondition.test(key == null ? null : emptyToNull(trim(key)));
+    }
+
+}
@@ -0,0 +1,289 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import software.leonov.cells.RowSchema.Type;
+import software.leonov.cells.Workbooks.Format;
+
+/**
+ * Writes the rows of a {@code ResultSet} to a sheet, used by {@link Sheets#writeResultSet(Sheet, ResultSet)}.
+ * <p>
+ * The type of every column is mapped once from the {@code ResultSetMetaData}. Rows are fetched by a separate reader
+ * thread in batches of the fetch size of the result set and handed over through a bounded queue, so the next batch is
+ * fetched from the database while the current one is written. Batches are stored column by column in primitive arrays,
+ * numbers and booleans are never boxed. The result set is only used by the reader thread, which has always terminated
+ * when {@link #export()} returns.
+ *
+ * @author Zhenya Leonov
+ */
+final class ResultSetExporter {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY     = 2;
+
+    private static final Batch END = new Batch(0, new Type[0]);
+
+    private final Sheet     sheet;
+    private final ResultSet rs;
+    private final Type[]    types;
+    private final String[]  labels;
+    private final RowSchema header = new RowSchema();
+    private final RowSchema schema = new RowSchema();
+    private final int       batchSize;
+    private final int       maxRows;
+
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private volatile Throwable failure = null;
+    private volatile boolean   stopped = false;
+
+    ResultSetExporter(final Sheet sheet, final ResultSet rs) throws SQLException {
+        final ResultSetMetaData metadata = rs.getMetaData();
+        final Format            format   = Format.of(sheet.getWorkbook());
+        final int               columns  = metadata.getColumnCount();
+
+        checkArgument(columns > 0, "no columns");
+        checkArgument(columns <= format.getMaxColNum(), "too many columns: %s", columns);
+
+        this.sheet   = sheet;
+        this.rs      = rs;
+        this.types   = new Type[columns];
+        this.labels  = new String[columns];
+        this.maxRows = format.getMaxRowNum();
+
+        for (int i = 0; i < columns; i++) {
+            types[i]  = typeOf(metadata.getColumnType(i + 1));
+            labels[i] = metadata.getColumnLabel(i + 1);
+            header.addColumn(Type.STRING);
+            schema.addColumn(types[i]);
+        }
+
+        if (rs.getFetchSize() <= 0)
+            try {
+                rs.setFetchSize(DEFAULT_FETCH_SIZE);
+            } catch (final SQLException e) {
+                // the fetch size is only a hint
+            }
+
+        this.batchSize = rs.getFetchSize() > 0 ? rs.getFetchSize() : DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * Writes a header row of the column labels followed by the rows of the result set, continuing on new sheets when the
+     * maximum number of rows is reached.
+     *
+     * @return the sheets which were written to
+     * @throws SQLException if a database access error occurs
+     */
+    List<Sheet> export() throws SQLException {
+        final List<Sheet> sheets = new ArrayList<>();
+        final Thread      reader = new Thread(this::read, "cells-resultset-reader");
+
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            RowWriter writer = writeHeader(sheet);
+            int       next   = sheet.getLastRowNum() + 1;
+            sheets.add(sheet);
+
+            for (Batch batch = queue.take(); batch != END; batch = queue.take())
+                for (int row = 0; row < batch.size; row++) {
+                    if (next == maxRows) {
+                        writer = writeHeader(newSheet(sheets.size() + 1));
+                        next   = 1;
+                        sheets.add(writer.getSheet());
+                    }
+                    batch.write(writer.startRow(next++), row);
+                }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted", e);
+        } finally {
+            stopped = true;
+            reader.interrupt();
+            while (reader.isAlive()) { // drivers may swallow the interrupt, make room for the reader to finish
+                queue.clear();
+                Uninterruptibles.joinUninterruptibly(reader, 10, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (failure instanceof SQLException) {
+            final SQLException e = (SQLException) failure;
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } else if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        else if (failure instanceof Error)
+            throw (Error) failure;
+
+        return sheets;
+    }
+
+    // Runs on the reader thread
+    private void read() {
+        try {
+            boolean more = true;
+            while (more && !stopped) {
+                final Batch batch = new Batch(batchSize, types);
+                while (batch.size < batchSize && (more = rs.next()))
+                    batch.read(rs);
+                if (batch.size > 0)
+                    queue.put(batch);
+            }
+        } catch (final InterruptedException e) {
+            return; // the writer has stopped
+        } catch (final SQLException | RuntimeException | Error e) {
+            failure = e;
+        }
+        Uninterruptibles.putUninterruptibly(queue, END);
+    }
+
+    // Appends the header row and returns a writer which appends the following rows
+    private RowWriter writeHeader(final Sheet sheet) {
+        final RowWriter writer = header.compile(sheet).startRow();
+        for (final String label : labels)
+            writer.writeString(label);
+
+        return schema.compile(sheet);
+    }
+
+    // Creates the next unused sheet named after the first sheet: "name (2)", "name (3)", ...
+    private Sheet newSheet(int n) {
+        final Workbook workbook = sheet.getWorkbook();
+        final String   base     = sheet.getSheetName();
+
+        while (true) {
+            final String suffix = " (" + n++ + ")";
+            final String name   = WorkbookUtil.createSafeSheetName(base.substring(0, Math.min(base.length(), 31 - suffix.length())) + suffix);
+            if (workbook.getSheet(name) == null)
+                return workbook.createSheet(name);
+        }
+    }
+
+    private static Type typeOf(final int sqlType) {
+        switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return Type.NUMBER;
+        case Types.BIT:
+        case Types.BOOLEAN:
+            return Type.BOOLEAN;
+        case Types.DATE:
+            return Type.DATE;
+        case Types.TIMESTAMP:
+            return Type.DATE_TIME;
+        default:
+            return Type.STRING;
+        }
+    }
+
+    // A batch of rows stored column by column
+    private static final class Batch {
+
+        private final Type[]      types;
+        private final double[][]  numbers; // NUMBER and BOOLEAN columns
+        private final boolean[][] nulls;
+        private final Object[][]  objects; // other columns
+        private int               size = 0;
+
+        Batch(final int capacity, final Type[] types) {
+            this.types   = types;
+            this.numbers = new double[types.length][];
+            this.nulls   = new boolean[types.length][];
+            this.objects = new Object[types.length][];
+
+            for (int i = 0; i < types.length; i++)
+                if (types[i] == Type.NUMBER || types[i] == Type.BOOLEAN) {
+                    numbers[i] = new double[capacity];
+                    nulls[i]   = new boolean[capacity];
+                } else
+                    objects[i] = new Object[capacity];
+        }
+
+        void read(final ResultSet rs) throws SQLException {
+            for (int i = 0; i < types.length; i++)
+                switch (types[i]) {
+                case NUMBER:
+                    numbers[i][size] = rs.getDouble(i + 1);
+                    nulls[i][size]   = rs.wasNull();
+                    break;
+                case BOOLEAN:
+                    numbers[i][size] = rs.getBoolean(i + 1) ? 1 : 0;
+                    nulls[i][size]   = rs.wasNull();
+                    break;
+                case DATE:
+                    objects[i][size] = toLocalDate(rs.getDate(i + 1));
+                    break;
+                case DATE_TIME:
+                    objects[i][size] = toLocalDateTime(rs.getTimestamp(i + 1));
+                    break;
+                default:
+                    objects[i][size] = rs.getString(i + 1);
+                }
+            size++;
+        }
+
+        void write(final RowWriter writer, final int row) {
+            for (int i = 0; i < types.length; i++)
+                switch (types[i]) {
+                case NUMBER:
+                    if (nulls[i][row])
+                        writer.writeNull();
+                    else
+                        writer.writeNumber(numbers[i][row]);
+                    break;
+                case BOOLEAN:
+                    if (nulls[i][row])
+                        writer.writeNull();
+                    else
+                        writer.writeBoolean(numbers[i][row] != 0);
+                    break;
+                case DATE:
+                    writer.writeDate((LocalDate) objects[i][row]);
+                    break;
+                case DATE_TIME:
+                    writer.writeDate((LocalDateTime) objects[i][row]);
+                    break;
+                default:
+                    writer.writeString((String) objects[i][row]);
+                }
+        }
+
+    }
+
+    private static LocalDate toLocalDate(final Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    private static LocalDateTime toLocalDateTime(final Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+}
@@ -0,0 +1,805 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+
+import software.leonov.cells.RowSchema.NullPolicy;
+import software.leonov.cells.RowSchema.Type;
+import software.leonov.cells.util.StyleBuilder;
+
+/**
+ * Maps the fields of a class to the columns of a sheet, writing objects to rows and reading rows back into objects.
+ * <p>
+ * The columns are defined by the {@link Column} annotations of the class, or by all of its instance fields if none are
+ * annotated. Supported field types are the primitive and wrapper numeric types, {@code BigDecimal},
+ * {@code BigInteger}, {@code boolean}, {@code String} and other {@code CharSequence}s, enums (written by name),
+ * {@code LocalDate}, and {@code LocalDateTime}. Fields are accessed through public getters and setters ({@code getX},
+ * {@code isX}, or record-style {@code x()}, and {@code setX}) where they exist, and directly otherwise.
+ * <p>
+ * Classes are introspected once. Getters are compiled into lambdas with {@link LambdaMetafactory}, so primitive fields
+ * are read without boxing, and other accessors are cached as {@link MethodHandle}s. Rows are written through a
+ * {@link RowWriter} compiled from the {@link #newRowSchema(Workbook) schema} of the mapping.
+ * <p>
+ * Rows are read back either from a sheet in memory with {@link #stream(Sheet)}, or from a file with
+ * {@link #stream(Path)}, which does not load the workbook. The latter reads the stored values of the mapped columns into
+ * a {@link ColumnBatch} whose column types are taken from the field types, the same way as
+ * {@link Workbooks#readColumns(Path, ReadOptions, ColumnBatch)}, and populates the objects from the batch.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   public class Order {
+ *       &#64;Column(header = "Id")
+ *       private long id;
+ *
+ *       &#64;Column(header = "Amount", format = "#,##0.00")
+ *       private BigDecimal amount;
+ *       ...
+ *   }
+ *
+ *   final RowMapper&lt;Order&gt; mapper = RowMapper.of(Order.class).setHeaderStyle(new StyleBuilder().setSolidFillColor(GREY_25_PERCENT));
+ *
+ *   mapper.writeAll(sheet, orders);
+ *
+ *   try (final Stream&lt;Order&gt; stream = mapper.stream(sheet)) {
+ *       ...
+ *   }
+ * </pre>
+ *
+ * Instances are not thread-safe, but are cheap to create.
+ *
+ * @param <T> the type of the mapped objects
+ * @author Zhenya Leonov
+ */
+public final class RowMapper<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final int BATCH_SIZE = 1024;
+
+    private static final ClassValue<Mapping> MAPPINGS = new ClassValue<Mapping>() {
+        @Override
+        protected Mapping computeValue(final Class<?> type) {
+            return new Mapping(type);
+        }
+    };
+
+    private final Class<T>       type;
+    private final Mapping        mapping;
+    private final StyleBuilder[] styles;
+    private StyleBuilder         headerStyle = null;
+
+    private RowMapper(final Class<T> type) {
+        this.type    = type;
+        this.mapping = MAPPINGS.get(type);
+        this.styles  = new StyleBuilder[mapping.properties.length];
+    }
+
+    /**
+     * Returns a new {@code RowMapper} for the specified class.
+     *
+     * @param <T>  the type of the mapped objects
+     * @param type the class
+     * @return a new {@code RowMapper} for the specified class
+     * @throws IllegalArgumentException if the class has no mappable fields or a field of an unsupported type
+     */
+    public static <T> RowMapper<T> of(final Class<T> type) {
+        checkNotNull(type, "type == null");
+        return new RowMapper<>(type);
+    }
+
+    /**
+     * Sets the style of the header row.
+     *
+     * @param style the style of the header row
+     * @return this {@code RowMapper} instance
+     */
+    public RowMapper<T> setHeaderStyle(final StyleBuilder style) {
+        checkNotNull(style, "style == null");
+        this.headerStyle = style.newStyleBuilder();
+        return this;
+    }
+
+    /**
+     * Sets the style of the column of the specified field. The data format of the field's {@link Column} annotation, if
+     * any, takes precedence over the data format of the style.
+     *
+     * @param field the name of the field
+     * @param style the style of the column
+     * @return this {@code RowMapper} instance
+     */
+    public RowMapper<T> setStyle(final String field, final StyleBuilder style) {
+        checkNotNull(field, "field == null");
+        checkNotNull(style, "style == null");
+
+        for (int i = 0; i < mapping.properties.length; i++)
+            if (mapping.properties[i].name.equals(field)) {
+                styles[i] = style.newStyleBuilder();
+                return this;
+            }
+
+        throw new IllegalArgumentException("no such column: " + field);
+    }
+
+    /**
+     * Returns the headers of the columns, in order.
+     *
+     * @return the headers of the columns, in order
+     */
+    public List<String> getHeaders() {
+        return Collections.unmodifiableList(Arrays.stream(mapping.properties).map(property -> property.header).collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns a new {@link RowSchema} of the columns of this mapping, with the data formats of the {@link Column}
+     * annotations resolved in the specified workbook.
+     *
+     * @param workbook the workbook
+     * @return a new {@link RowSchema} of the columns of this mapping
+     */
+    public RowSchema newRowSchema(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+
+        final RowSchema schema = new RowSchema();
+        for (int i = 0; i < mapping.properties.length; i++) {
+            final Property property = mapping.properties[i];
+
+            StyleBuilder style = styles[i];
+            if (!property.format.isEmpty())
+                style = (style == null ? new StyleBuilder() : style.newStyleBuilder()).setDataFormat(workbook.createDataFormat().getFormat(property.format));
+
+            schema.addColumn(property.type, style, property.nulls);
+        }
+        return schema;
+    }
+
+    /**
+     * Appends a header row to the specified sheet and returns a {@link RowWriter} which appends the following rows.
+     *
+     * @param sheet the sheet
+     * @return a {@link RowWriter} which appends the rows following the header
+     */
+    public RowWriter writeHeader(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+
+        final RowSchema header = new RowSchema();
+        for (int i = 0; i < mapping.properties.length; i++)
+            header.addColumn(Type.STRING, headerStyle, NullPolicy.SKIP);
+
+        final RowWriter writer = header.compile(sheet).startRow();
+        for (final Property property : mapping.properties)
+            writer.writeString(property.header);
+
+        return newRowSchema(sheet.getWorkbook()).compile(sheet);
+    }
+
+    /**
+     * Starts the next row of the specified writer, which must have been compiled from the {@link #newRowSchema(Workbook)
+     * schema} of this mapping, and writes the specified object to it.
+     *
+     * @param writer the writer
+     * @param object the object
+     * @return the specified writer
+     */
+    public RowWriter write(final RowWriter writer, final T object) {
+        checkNotNull(writer, "writer == null");
+        checkNotNull(object, "object == null");
+
+        writer.startRow();
+        for (final Property property : mapping.properties)
+            property.writer.write(writer, object);
+
+        return writer;
+    }
+
+    /**
+     * Appends a header row and a row for each of the specified objects to the specified sheet.
+     *
+     * @param sheet   the sheet
+     * @param objects the objects
+     * @return the specified sheet
+     */
+    public Sheet writeAll(final Sheet sheet, final Iterable<? extends T> objects) {
+        checkNotNull(sheet, "sheet == null");
+        checkNotNull(objects, "objects == null");
+
+        final RowWriter writer = writeHeader(sheet);
+        for (final T object : objects)
+            write(writer, object);
+
+        return sheet;
+    }
+
+    /**
+     * Returns a new object populated from the cells of the specified row, the first column of the mapping being column
+     * {@code A}. Blank cells leave the corresponding fields unset. Fields without a setter that cannot be set directly are
+     * skipped.
+     *
+     * @param row the row
+     * @return a new object populated from the cells of the specified row
+     * @throws IllegalStateException if the class has no no-argument constructor
+     */
+    public T read(final Row row) {
+        checkNotNull(row, "row == null");
+        checkState(mapping.constructor != null, "%s has no no-argument constructor", type.getName());
+
+        try {
+            final T object = type.cast(mapping.constructor.invoke());
+            for (int i = 0; i < mapping.properties.length; i++) {
+                final Cell cell = row.getCell(i);
+                if (mapping.properties[i].reader != null && cell != null && cell.getCellType() != CellType.BLANK)
+                    mapping.properties[i].reader.read(cell, object);
+            }
+            return object;
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the objects read from the rows of the specified sheet, skipping its
+     * first row, which is expected to be the header.
+     * <p>
+     * The sheet must be in memory. The rows of an {@link org.apache.poi.xssf.streaming.SXSSFSheet SXSSFSheet} which have
+     * already been flushed to disk cannot be read, use {@link #stream(Path)} to read large files.
+     *
+     * @param sheet the sheet
+     * @return a lazily populated {@code Stream} of the objects read from the rows of the specified sheet
+     * @see #read(Row)
+     */
+    public Stream<T> stream(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+        return Sheets.rows(sheet).skip(1).map(this::read);
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the objects read from the rows of the first sheet of the specified
+     * file, skipping its first row, which is expected to be the header.
+     * <p>
+     * See {@link #stream(Path, ReadOptions)} for further details.
+     *
+     * @param path the path to read
+     * @return a lazily populated {@code Stream} of the objects read from the rows of the first sheet of the specified file
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if the class has no no-argument constructor
+     */
+    public Stream<T> stream(final Path path) throws IOException {
+        return stream(path, new ReadOptions().setRows(1, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the objects read from the rows of the specified file, according to the
+     * specified options. The first column of the mapping is column {@code A}. The header row is only skipped if the
+     * {@link ReadOptions#setRows(int, int) row range} of the options excludes it.
+     * <p>
+     * Unlike {@link #stream(Sheet)} this method does not load the workbook into memory. The stored values of the mapped
+     * columns are read batch by batch into a {@link ColumnBatch} as described in
+     * {@link Workbooks#readColumns(Path, ReadOptions, ColumnBatch)}, and are never formatted:
+     * <ul>
+     * <li>Integral fields are read from {@link ColumnBatch.Type#LONG LONG} columns, floating-point fields and other
+     * {@code Number}s from {@link ColumnBatch.Type#DOUBLE DOUBLE} columns, and boolean fields from
+     * {@link ColumnBatch.Type#BOOLEAN BOOLEAN} columns.</li>
+     * <li>{@code LocalDate} and {@code LocalDateTime} fields are read from {@code DOUBLE} columns and converted with
+     * {@link SerialDates} in the date system of the workbook.</li>
+     * <li>{@code String}s, enums, {@code BigDecimal}s and {@code BigInteger}s are read from {@link ColumnBatch.Type#STRING
+     * STRING} columns. Numeric cells are converted to text the way Excel displays them in the <i>General</i> format rather
+     * than in the format of the cell.</li>
+     * </ul>
+     * Blank cells leave the corresponding fields unset, and rows without any values in the mapped columns are skipped.
+     * Fields without a setter that cannot be set directly are not read.
+     * <p>
+     * The returned stream holds the file open and must be {@link Stream#close() closed}, preferably with a
+     * try-with-resources statement. The file is never modified.
+     *
+     * @param path    the path to read
+     * @param options the read options
+     * @return a lazily populated {@code Stream} of the objects read from the rows of the specified file
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the sheet does not exist, no field can be read, or a stop condition is set
+     * @throws IllegalStateException    if the class has no no-argument constructor
+     */
+    public Stream<T> stream(final Path path, final ReadOptions options) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+        checkState(mapping.constructor != null, "%s has no no-argument constructor", type.getName());
+
+        final ColumnBatch batch     = new ColumnBatch(BATCH_SIZE);
+        final int[]       positions = new int[mapping.properties.length]; // the position of each field in the batch or -1
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = mapping.properties[i].column == null ? -1 : batch.addColumn(i, mapping.properties[i].column).getColumnCount() - 1;
+
+        final ColumnBatchReader reader   = Workbooks.readColumns(path, options, batch);
+        final boolean           date1904 = reader.isDate1904();
+
+        final Iterator<T> objects = new AbstractIterator<T>() {
+            private int row = 0;
+
+            @Override
+            protected T computeNext() {
+                if (row == batch.size()) {
+                    if (!reader.hasNext())
+                        return endOfData();
+                    reader.next();
+                    row = 0;
+                }
+                return read(batch, positions, row++, date1904);
+            }
+        };
+
+        return Streams.stream(objects).onClose(() -> {
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Returns a new object populated from the specified row of the batch
+    private T read(final ColumnBatch batch, final int[] positions, final int row, final boolean date1904) {
+        try {
+            final T object = type.cast(mapping.constructor.invoke());
+            for (int i = 0; i < positions.length; i++)
+                if (positions[i] >= 0 && !batch.isNull(positions[i], row))
+                    mapping.properties[i].batchReader.read(batch, positions[i], row, date1904, object);
+            return object;
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(final Throwable t) {
+        Throwables.throwIfUnchecked(t);
+        Throwables.throwIfInstanceOf(t, Error.class);
+        return new UndeclaredThrowableException(t);
+    }
+
+    private interface PropertyWriter {
+        void write(RowWriter writer, Object object);
+    }
+
+    private interface PropertyReader {
+        void read(Cell cell, Object object) throws Throwable;
+    }
+
+    private interface BatchReader {
+        void read(ColumnBatch batch, int position, int row, boolean date1904, Object object) throws Throwable;
+    }
+
+    private interface BatchParser {
+        Object parse(ColumnBatch batch, int position, int row, boolean date1904);
+    }
+
+    // The introspected columns and constructor of a class, shared by all mappers of the class
+    private static final class Mapping {
+
+        private final Property[]   properties;
+        private final MethodHandle constructor; // ()Object or null
+
+        Mapping(final Class<?> type) {
+            final List<Field> annotated = new ArrayList<>();
+            final List<Field> all       = new ArrayList<>();
+
+            final List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+                hierarchy.add(0, c);
+
+            for (final Class<?> c : hierarchy)
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+                        continue;
+                    if (field.isAnnotationPresent(Column.class))
+                        annotated.add(field);
+                    else if (!Modifier.isTransient(field.getModifiers()))
+                        all.add(field);
+                }
+
+            final List<Field> fields = annotated.isEmpty() ? all : annotated;
+            checkArgument(!fields.isEmpty(), "%s has no fields", type.getName());
+
+            this.properties = fields.stream()
+                                    .sorted(Comparator.comparingInt(field -> field.isAnnotationPresent(Column.class) ? field.getAnnotation(Column.class).order() : Integer.MAX_VALUE))
+                                    .map(field -> new Property(type, field))
+                                    .toArray(Property[]::new);
+
+            MethodHandle constructor;
+            try {
+                final java.lang.reflect.Constructor<?> c = type.getDeclaredConstructor();
+                c.setAccessible(true);
+                constructor = LOOKUP.unreflectConstructor(c).asType(methodType(Object.class));
+            } catch (final NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+                constructor = null; // objects can still be written
+            }
+            this.constructor = constructor;
+        }
+
+    }
+
+    // A mapped field with its compiled accessors
+    private static final class Property {
+
+        private final String         name;
+        private final String         header;
+        private final String         format;
+        private final NullPolicy     nulls;
+        private final Type           type;
+        private final PropertyWriter writer;
+        private final PropertyReader reader; // null if the field cannot be set
+
+        private final ColumnBatch.Type column;      // null if the field cannot be set
+        private final BatchReader      batchReader; // null if the field cannot be set
+
+        Property(final Class<?> owner, final Field field) {
+            final Column   column = field.getAnnotation(Column.class);
+            final Class<?> c      = field.getType();
+
+            this.name   = field.getName();
+            this.header = column == null || column.header().isEmpty() ? name : column.header();
+            this.format = column == null ? "" : column.format();
+            this.nulls  = column == null ? NullPolicy.SKIP : column.nulls();
+            this.type   = typeOf(c, field);
+
+            final Method       method = findGetter(owner, field);
+            final MethodHandle getter = method != null ? unreflect(method) : unreflectGetter(field);
+            final MethodHandle setter = findSetter(owner, field);
+
+            this.writer = newWriter(c, method, getter);
+            this.reader = setter == null ? null : newReader(c, setter);
+
+            this.column      = setter == null ? null : columnTypeOf(c);
+            this.batchReader = column == null ? null : newBatchReader(c, setter);
+        }
+
+        private static Type typeOf(final Class<?> c, final Field field) {
+            if (c == long.class || c == int.class || c == short.class || c == byte.class || c == double.class || c == float.class || Number.class.isAssignableFrom(c))
+                return Type.NUMBER;
+            else if (c == boolean.class || c == Boolean.class)
+                return Type.BOOLEAN;
+            else if (CharSequence.class.isAssignableFrom(c) || c.isEnum())
+                return Type.STRING;
+            else if (c == LocalDate.class)
+                return Type.DATE;
+            else if (c == LocalDateTime.class)
+                return Type.DATE_TIME;
+            else
+                throw new IllegalArgumentException("unsupported type of " + field + ": " + c.getName());
+        }
+
+        private static PropertyWriter newWriter(final Class<?> c, final Method method, final MethodHandle getter) {
+            if (c == long.class || c == int.class || c == short.class || c == byte.class) {
+                final ToLongFunction<Object> f = lambda(ToLongFunction.class, "applyAsLong", methodType(long.class, Object.class), method, getter);
+                return (writer, object) -> writer.writeNumber(f.applyAsLong(object));
+            } else if (c == double.class || c == float.class) {
+                final ToDoubleFunction<Object> f = lambda(ToDoubleFunction.class, "applyAsDouble", methodType(double.class, Object.class), method, getter);
+                return (writer, object) -> writer.writeNumber(f.applyAsDouble(object));
+            } else if (c == boolean.class) {
+                final Predicate<Object> f = lambda(Predicate.class, "test", methodType(boolean.class, Object.class), method, getter);
+                return (writer, object) -> writer.writeBoolean(f.test(object));
+            }
+
+            final Function<Object, Object> f = lambda(Function.class, "apply", methodType(Object.class, Object.class), method, getter);
+
+            if (c == Boolean.class)
+                return (writer, object) -> {
+                    final Boolean value = (Boolean) f.apply(object);
+                    if (value == null)
+                        writer.writeNull();
+                    else
+                        writer.writeBoolean(value);
+                };
+            else if (Number.class.isAssignableFrom(c))
+                return (writer, object) -> {
+                    final Number value = (Number) f.apply(object);
+                    if (value == null)
+                        writer.writeNull();
+                    else
+                        writer.writeNumber(value.doubleValue());
+                };
+            else if (c.isEnum())
+                return (writer, object) -> {
+                    final Enum<?> value = (Enum<?>) f.apply(object);
+                    writer.writeString(value == null ? null : value.name());
+                };
+            else if (c == LocalDate.class)
+                return (writer, object) -> writer.writeDate((LocalDate) f.apply(object));
+            else if (c == LocalDateTime.class)
+                return (writer, object) -> writer.writeDate((LocalDateTime) f.apply(object));
+            else
+                return (writer, object) -> writer.writeString((CharSequence) f.apply(object));
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static PropertyReader newReader(final Class<?> c, final MethodHandle setter) {
+            final MethodHandle h = setter.asType(methodType(void.class, Object.class, c));
+
+            if (c == long.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getLong(cell, 0L));
+            else if (c == int.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getInt(cell, 0));
+            else if (c == short.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getShort(cell, (short) 0));
+            else if (c == byte.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getByte(cell, (byte) 0));
+            else if (c == double.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getDouble(cell, 0d));
+            else if (c == float.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getFloat(cell, 0f));
+            else if (c == boolean.class)
+                return (cell, object) -> h.invokeExact(object, Cells.getBoolean(cell, false));
+
+            final Function<Cell, Object> parser;
+            if (c == Long.class)
+                parser = Cells::parseLong;
+            else if (c == Integer.class)
+                parser = Cells::parseInteger;
+            else if (c == Short.class)
+                parser = Cells::parseShort;
+            else if (c == Byte.class)
+                parser = Cells::parseByte;
+            else if (c == Double.class || c == Number.class)
+                parser = Cells::parseDouble;
+            else if (c == Float.class)
+                parser = Cells::parseFloat;
+            else if (c == BigDecimal.class)
+                parser = Property::toBigDecimal;
+            else if (c == BigInteger.class)
+                parser = Property::toBigInteger;
+            else if (c == Boolean.class)
+                parser = Cells::parseBoolean;
+            else if (c.isEnum())
+                parser = cell -> Enum.valueOf((Class) c, Cells.formatValue(cell));
+            else if (c == LocalDate.class)
+                parser = Cells::parseLocalDate;
+            else if (c == LocalDateTime.class)
+                parser = Cells::parseLocalDateTime;
+            else if (c.isAssignableFrom(String.class))
+                parser = Cells::formatValue;
+            else
+                return null; // a numeric or character type which cannot be created from a cell
+
+            final MethodHandle g = h.asType(methodType(void.class, Object.class, Object.class));
+            return (cell, object) -> g.invokeExact(object, parser.apply(cell));
+        }
+
+        // The type of the batch column a field is read from, or null for a type which cannot be created from a cell
+        private static ColumnBatch.Type columnTypeOf(final Class<?> c) {
+            if (c == long.class || c == int.class || c == short.class || c == byte.class || c == Long.class || c == Integer.class || c == Short.class || c == Byte.class)
+                return ColumnBatch.Type.LONG;
+            else if (c == double.class || c == float.class || c == Double.class || c == Float.class || c == Number.class || c == LocalDate.class || c == LocalDateTime.class)
+                return ColumnBatch.Type.DOUBLE;
+            else if (c == boolean.class || c == Boolean.class)
+                return ColumnBatch.Type.BOOLEAN;
+            else if (c == BigDecimal.class || c == BigInteger.class || c.isEnum() || c.isAssignableFrom(String.class))
+                return ColumnBatch.Type.STRING;
+            else
+                return null;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static BatchReader newBatchReader(final Class<?> c, final MethodHandle setter) {
+            final MethodHandle h = setter.asType(methodType(void.class, Object.class, c));
+
+            if (c == long.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, batch.getLongs(i)[row]);
+            else if (c == int.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, (int) checkRange(batch.getLongs(i)[row], Integer.MIN_VALUE, Integer.MAX_VALUE));
+            else if (c == short.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, (short) checkRange(batch.getLongs(i)[row], Short.MIN_VALUE, Short.MAX_VALUE));
+            else if (c == byte.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, (byte) checkRange(batch.getLongs(i)[row], Byte.MIN_VALUE, Byte.MAX_VALUE));
+            else if (c == double.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, batch.getDoubles(i)[row]);
+            else if (c == float.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, (float) batch.getDoubles(i)[row]);
+            else if (c == boolean.class)
+                return (batch, i, row, date1904, object) -> h.invokeExact(object, batch.getBooleans(i)[row]);
+
+            final BatchParser parser;
+            if (c == Long.class)
+                parser = (batch, i, row, date1904) -> batch.getLongs(i)[row];
+            else if (c == Integer.class)
+                parser = (batch, i, row, date1904) -> (int) checkRange(batch.getLongs(i)[row], Integer.MIN_VALUE, Integer.MAX_VALUE);
+            else if (c == Short.class)
+                parser = (batch, i, row, date1904) -> (short) checkRange(batch.getLongs(i)[row], Short.MIN_VALUE, Short.MAX_VALUE);
+            else if (c == Byte.class)
+                parser = (batch, i, row, date1904) -> (byte) checkRange(batch.getLongs(i)[row], Byte.MIN_VALUE, Byte.MAX_VALUE);
+            else if (c == Double.class || c == Number.class)
+                parser = (batch, i, row, date1904) -> batch.getDoubles(i)[row];
+            else if (c == Float.class)
+                parser = (batch, i, row, date1904) -> (float) batch.getDoubles(i)[row];
+            else if (c == Boolean.class)
+                parser = (batch, i, row, date1904) -> batch.getBooleans(i)[row];
+            else if (c == LocalDate.class)
+                parser = (batch, i, row, date1904) -> SerialDates.toLocalDate(batch.getDoubles(i)[row], date1904);
+            else if (c == LocalDateTime.class)
+                parser = (batch, i, row, date1904) -> SerialDates.toLocalDateTime(batch.getDoubles(i)[row], date1904);
+            else if (c == BigDecimal.class)
+                parser = (batch, i, row, date1904) -> new BigDecimal(batch.getStrings(i)[row]);
+            else if (c == BigInteger.class)
+                parser = (batch, i, row, date1904) -> parseBigInteger(batch.getStrings(i)[row]);
+            else if (c.isEnum())
+                parser = (batch, i, row, date1904) -> Enum.valueOf((Class) c, batch.getStrings(i)[row]);
+            else
+                parser = (batch, i, row, date1904) -> batch.getStrings(i)[row];
+
+            final MethodHandle g = h.asType(methodType(void.class, Object.class, Object.class));
+            return (batch, i, row, date1904, object) -> g.invokeExact(object, parser.parse(batch, i, row, date1904));
+        }
+
+        // Compiles the getter into an instance of the functional interface, falling back to the method handle
+        @SuppressWarnings("unchecked")
+        private static <F> F lambda(final Class<? super F> iface, final String name, final MethodType erased, final Method method, final MethodHandle getter) {
+            if (method != null && Modifier.isPublic(method.getDeclaringClass().getModifiers()))
+                try {
+                    final MethodType instantiated = methodType(erased.returnType(), method.getDeclaringClass());
+                    final CallSite   site         = LambdaMetafactory.metafactory(LOOKUP, name, methodType(iface), erased, getter, instantiated);
+                    return (F) site.getTarget().invoke();
+                } catch (final Throwable t) {
+                    // for example the class is not visible from the class loader of this class
+                }
+
+            final MethodHandle h = getter.asType(erased);
+            if (iface == ToLongFunction.class)
+                return (F) (ToLongFunction<Object>) object -> {
+                    try {
+                        return (long) h.invokeExact(object);
+                    } catch (final Throwable t) {
+                        throw rethrow(t);
+                    }
+                };
+            else if (iface == ToDoubleFunction.class)
+                return (F) (ToDoubleFunction<Object>) object -> {
+                    try {
+                        return (double) h.invokeExact(object);
+                    } catch (final Throwable t) {
+                        throw rethrow(t);
+                    }
+                };
+            else if (iface == Predicate.class)
+                return (F) (Predicate<Object>) object -> {
+                    try {
+                        return (boolean) h.invokeExact(object);
+                    } catch (final Throwable t) {
+                        throw rethrow(t);
+                    }
+                };
+            else
+                return (F) (Function<Object, Object>) object -> {
+                    try {
+                        return (Object) h.invokeExact(object);
+                    } catch (final Throwable t) {
+                        throw rethrow(t);
+                    }
+                };
+        }
+
+        // A public getX, isX or record-style x() method returning the type of the field
+        private static Method findGetter(final Class<?> owner, final Field field) {
+            final String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+            for (final String name : new String[] { "get" + suffix, "is" + suffix, field.getName() })
+                try {
+                    final Method method = owner.getMethod(name);
+                    if (method.getReturnType() == field.getType() && !Modifier.isStatic(method.getModifiers()))
+                        return method;
+                } catch (final NoSuchMethodException e) {
+                    // try the next name
+                }
+            return null;
+        }
+
+        // A public setX method or the field itself if it is not final
+        private static MethodHandle findSetter(final Class<?> owner, final Field field) {
+            try {
+                final Method method = owner.getMethod("set" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1), field.getType());
+                if (!Modifier.isStatic(method.getModifiers()))
+                    return unreflect(method);
+            } catch (final NoSuchMethodException e) {
+                // set the field directly
+            }
+
+            if (Modifier.isFinal(field.getModifiers()))
+                return null;
+
+            try {
+                field.setAccessible(true);
+                return LOOKUP.unreflectSetter(field);
+            } catch (final IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        // Parses string cells exactly, getDouble would round them to 17 significant digits
+        private static BigDecimal toBigDecimal(final Cell cell) {
+            if (cell.getCellType() != CellType.STRING)
+                return BigDecimal.valueOf(Cells.getDouble(cell, 0d));
+
+            final String value = Cells.formatValue(cell);
+            return value == null ? null : new BigDecimal(value);
+        }
+
+        // Parses string cells exactly, getLong would reject values outside the range of a long
+        private static BigInteger toBigInteger(final Cell cell) {
+            if (cell.getCellType() != CellType.STRING)
+                return BigInteger.valueOf(Cells.getLong(cell, 0L));
+
+            final String value = Cells.formatValue(cell);
+            return value == null ? null : new BigInteger(value);
+        }
+
+        // Accepts text such as 1E+20, the way Excel displays large numbers, but not fractions
+        private static BigInteger parseBigInteger(final String value) {
+            try {
+                return new BigDecimal(value).toBigIntegerExact();
+            } catch (final ArithmeticException e) {
+                throw new NumberFormatException("not a whole number: " + value);
+            }
+        }
+
+        private static long checkRange(final long value, final long min, final long max) {
+            if (value < min || value > max)
+                throw new NumberFormatException("value out of range: " + value);
+            return value;
+        }
+
+        private static MethodHandle unreflect(final Method method) {
+            try {
+                method.setAccessible(true);
+                return LOOKUP.unreflect(method);
+            } catch (final IllegalAccessException | RuntimeException e) {
+                throw new IllegalArgumentException("cannot access " + method, e);
+            }
+        }
+
+        private static MethodHandle unreflectGetter(final Field field) {
+            try {
+                field.setAccessible(true);
+                return LOOKUP.unreflectGetter(field);
+            } catch (final IllegalAccessException | RuntimeException e) {
+                throw new IllegalArgumentException("cannot access " + field, e);
+            }
+        }
+
+    }
+
+}
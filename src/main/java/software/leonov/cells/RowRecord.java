@@ -0,0 +1,236 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.emptyToNull;
+import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
+import static software.leonov.common.base.Str.trim;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * A lightweight, read-only snapshot of a single row produced by the streaming methods in {@link Workbooks}, such as
+ * {@link Workbooks#stream(java.nio.file.Path) Workbooks.stream(Path)}.
+ * <p>
+ * Unlike a {@link Row} a {@code RowRecord} is not attached to a workbook. It only retains the formatted values of the
+ * non-blank cells in the row, as they would be returned by {@link Cells#formatValue(org.apache.poi.ss.usermodel.Cell)
+ * Cells.formatValue(Cell)}. Blank cells are not retained.
+ * <p>
+ * See {@link RowRecords} for static methods which parse the values of a {@code RowRecord}.
+ *
+ * @author Zhenya Leonov
+ */
+public final class RowRecord {
+
+    private final int      rowNum;
+    private final int[]    columns;
+    private final String[] values;
+
+    private RowRecord(final int rowNum, final int[] columns, final String[] values) {
+        this.rowNum  = rowNum;
+        this.columns = columns;
+        this.values  = values;
+    }
+
+    /**
+     * Returns the 0-based index of this row in the sheet.
+     *
+     * @return the 0-based index of this row in the sheet
+     */
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    /**
+     * Returns the number of non-blank cells in this row.
+     *
+     * @return the number of non-blank cells in this row
+     */
+    public int size() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the 0-based column index of the cell at the specified position in this row.
+     *
+     * @param position the position of the cell, between 0 (inclusive) and {@link #size()} (exclusive)
+     * @return the 0-based column index of the cell at the specified position in this row
+     */
+    public int getColumnAt(final int position) {
+        checkElementIndex(position, columns.length);
+        return columns[position];
+    }
+
+    /**
+     * Returns the formatted value of the cell at the specified position in this row.
+     *
+     * @param position the position of the cell, between 0 (inclusive) and {@link #size()} (exclusive)
+     * @return the formatted value of the cell at the specified position in this row
+     */
+    public String getValueAt(final int position) {
+        checkElementIndex(position, values.length);
+        return values[position];
+    }
+
+    /**
+     * Returns the formatted value of the specified cell or {@code null} if the cell is undefined or blank.
+     *
+     * @param index the 0-based column index
+     * @return the formatted value of the specified cell or {@code null}
+     * @see Rows#getCell(Row, int)
+     */
+    public String getValue(final int index) {
+        checkArgument(index >= 0, "index < 0");
+        final int position = Arrays.binarySearch(columns, index);
+        return position < 0 ? null : values[position];
+    }
+
+    /**
+     * Returns the formatted value of the specified cell or {@code null} if the cell is undefined or blank.
+     *
+     * @param colref the letter reference of the column
+     * @return the formatted value of the specified cell or {@code null}
+     * @see Rows#getCell(Row, String)
+     */
+    public String getValue(final String colref) {
+        checkNotNull(colref, "colref == null");
+        return getValue(convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the index (0-based) of the first non-blank cell in this row or an empty {@code Optional} if the row has no
+     * non-blank cells.
+     *
+     * @return the index (0-based) of the first non-blank cell in this row or an empty {@code Optional}
+     * @see Rows#getFirstCellIndex(Row)
+     */
+    public Optional<Integer> getFirstCellIndex() {
+        return columns.length == 0 ? Optional.empty() : Optional.of(columns[0]);
+    }
+
+    /**
+     * Returns the index (0-based) of the last non-blank cell in this row or an empty {@code Optional} if the row has no
+     * non-blank cells.
+     *
+     * @return the index (0-based) of the last non-blank cell in this row or an empty {@code Optional}
+     * @see Rows#getLastCellIndex(Row)
+     */
+    public Optional<Integer> getLastCellIndex() {
+        return columns.length == 0 ? Optional.empty() : Optional.of(columns[columns.length - 1]);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder().append(rowNum).append(": [");
+        for (int i = 0; i < columns.length; i++)
+            sb.append(i == 0 ? "" : ", ").append(columns[i]).append('=').append(values[i]);
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Accumulates the cells of a single row while it is being parsed. Instances are reused from one row to the next.
+     */
+    static final class Buffer {
+
+        private int      size    = 0;
+        private int[]    columns = new int[16];
+        private String[] values  = new String[16];
+        private boolean  sorted  = true;
+
+        /**
+         * Adds a cell to the current row. Blank values are ignored. Leading and trailing whitespace is trimmed.
+         *
+         * @param column the 0-based column index
+         * @param value  the formatted value of the cell
+         */
+        void add(final int column, final String value) {
+            if (value == null)
+                return;
+
+            final String trimmed = emptyToNull(trim(value));
+            if (trimmed == null)
+                return;
+
+            if (size == columns.length) {
+                columns = Arrays.copyOf(columns, size * 2);
+                values  = Arrays.copyOf(values, size * 2);
+            }
+
+            if (size > 0 && columns[size - 1] >= column)
+                sorted = false;
+
+            columns[size]  = column;
+            values[size++] = trimmed;
+        }
+
+        /**
+         * Returns {@code true} if no cells have been added since the last call to {@link #clear()}.
+         *
+         * @return {@code true} if no cells have been added since the last call to {@link #clear()}
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Returns a new {@code RowRecord} containing the cells added since the last call to {@link #clear()} and clears this
+         * buffer.
+         *
+         * @param rowNum the 0-based row index
+         * @return a new {@code RowRecord}
+         */
+        RowRecord build(final int rowNum) {
+            if (!sorted)
+                sort();
+
+            final RowRecord record = new RowRecord(rowNum, Arrays.copyOf(columns, size), Arrays.copyOf(values, size));
+            clear();
+            return record;
+        }
+
+        /**
+         * Discards all cells added to this buffer.
+         */
+        void clear() {
+            Arrays.fill(values, 0, size, null);
+            size   = 0;
+            sorted = true;
+        }
+
+        // Cells are almost always stored in column order, an insertion sort is sufficient for the rare exception. If a
+        // column is defined more than once the last definition wins.
+        private void sort() {
+            for (int i = 1; i < size; i++) {
+                final int    column = columns[i];
+                final String value  = values[i];
+
+                int j = i - 1;
+                while (j >= 0 && columns[j] > column) {
+                    columns[j + 1] = columns[j];
+                    values[j + 1]  = values[j];
+                    j--;
+                }
+                columns[j + 1] = column;
+                values[j + 1]  = value;
+            }
+
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n > 0 && columns[n - 1] == columns[i])
+                    n--;
+                columns[n]  = columns[i];
+                values[n++] = values[i];
+            }
+
+            Arrays.fill(values, n, size, null);
+            size   = n;
+            sorted = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package software.leonov.cells;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+
+/**
+ * Base class for iterators which parse {@link RowRecord}s from a workbook file on demand, one row at a time.
+ * <p>
+ * Implementations must release all underlying resources once the last row has been returned or when {@link #close()}
+ * is called, whichever comes first. {@link #close()} must be idempotent.
+ *
+ * @author Zhenya Leonov
+ */
+abstract class RowRecordIterator extends AbstractIterator<RowRecord> implements Closeable {
+
+    /**
+     * Returns a sequential {@code Stream} backed by this iterator which closes this iterator when the stream is closed.
+     *
+     * @return a sequential {@code Stream} backed by this iterator
+     */
+    Stream<RowRecord> stream() {
+        return Streams.stream(this).onClose(() -> {
+            try {
+                close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the 0-based column index of the specified cell reference (e.g. 2 for <i>C15</i>) or -1 if the reference does
+     * not start with a column letter. Unlike {@link org.apache.poi.ss.util.CellReference CellReference} this method does
+     * not allocate.
+     *
+     * @param ref the cell reference
+     * @return the 0-based column index of the specified cell reference or -1
+     */
+    static int columnIndexOf(final CharSequence ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            final char c = ref.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                column = column * 26 + c - 'A' + 1;
+            else if (c >= 'a' && c <= 'z')
+                column = column * 26 + c - 'a' + 1;
+            else if (c != '$')
+                break;
+        }
+        return column - 1;
+    }
+
+}
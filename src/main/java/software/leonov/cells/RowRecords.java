@@ -0,0 +1,236 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Static methods for working with {@link RowRecord}s. The methods in this class are the streaming equivalents of the
+ * {@code parseXXX} methods in {@link Cells}.
+ * <p>
+ * All methods in this class return a {@code null} value if the specified cell is undefined or blank.
+ *
+ * @author Zhenya Leonov
+ */
+public final class RowRecords {
+
+    private RowRecords() {
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Boolean}.
+     * <p>
+     * Note: this method defines a boolean value differently than {@link Boolean#parseBoolean(String) Java}. If the
+     * formatted cell value is not equal to the string "true" or "false" (ignoring case) this call will result in an
+     * exception.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Boolean}
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a boolean
+     * @see Cells#parseBoolean(Cell)
+     */
+    public static Boolean parseBoolean(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+
+        final String value = record.getValue(index);
+        if (value == null)
+            return null;
+        else if (value.equalsIgnoreCase("true"))
+            return true;
+        else if (value.equalsIgnoreCase("false"))
+            return false;
+        else
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Boolean}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Boolean}
+     * @throws IllegalArgumentException if the value of the cell cannot be parsed as a boolean
+     * @see #parseBoolean(RowRecord, int)
+     */
+    public static Boolean parseBoolean(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseBoolean(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Byte}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Byte}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a byte
+     * @see Cells#parseByte(Cell)
+     */
+    public static Byte parseByte(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Byte(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Byte}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Byte}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a byte
+     * @see Cells#parseByte(Cell)
+     */
+    public static Byte parseByte(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseByte(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Double}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Double}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a double
+     * @see Cells#parseDouble(Cell)
+     */
+    public static Double parseDouble(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Double(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Double}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Double}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a double
+     * @see Cells#parseDouble(Cell)
+     */
+    public static Double parseDouble(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseDouble(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Float}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Float}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a float
+     * @see Cells#parseFloat(Cell)
+     */
+    public static Float parseFloat(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Float(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Float}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Float}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a float
+     * @see Cells#parseFloat(Cell)
+     */
+    public static Float parseFloat(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseFloat(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as an {@code Integer}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as an {@code Integer}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as an integer
+     * @see Cells#parseInteger(Cell)
+     */
+    public static Integer parseInteger(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Integer(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as an {@code Integer}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as an {@code Integer}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as an integer
+     * @see Cells#parseInteger(Cell)
+     */
+    public static Integer parseInteger(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseInteger(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Long}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Long}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a long
+     * @see Cells#parseLong(Cell)
+     */
+    public static Long parseLong(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Long(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Long}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Long}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a long
+     * @see Cells#parseLong(Cell)
+     */
+    public static Long parseLong(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseLong(record, convertColStringToIndex(colref));
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Short}.
+     *
+     * @param record the row record
+     * @param index  the 0-based column index
+     * @return the value of the specified cell parsed as a {@code Short}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a short
+     * @see Cells#parseShort(Cell)
+     */
+    public static Short parseShort(final RowRecord record, final int index) {
+        checkNotNull(record, "record == null");
+        final String value = record.getValue(index);
+        return value == null ? null : new Short(value);
+    }
+
+    /**
+     * Returns the value of the specified cell parsed as a {@code Short}.
+     *
+     * @param record the row record
+     * @param colref the letter reference of the column
+     * @return the value of the specified cell parsed as a {@code Short}
+     * @throws NumberFormatException if the value of the cell cannot be parsed as a short
+     * @see Cells#parseShort(Cell)
+     */
+    public static Short parseShort(final RowRecord record, final String colref) {
+        checkNotNull(colref, "colref == null");
+        return parseShort(record, convertColStringToIndex(colref));
+    }
+
+}
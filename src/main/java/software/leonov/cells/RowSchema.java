@@ -0,0 +1,204 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import software.leonov.cells.Workbooks.Format;
+import software.leonov.cells.util.StyleBuilder;
+
+/**
+ * The type, style, and null policy of each column of the rows written by a {@link RowWriter}.
+ * <p>
+ * A schema describes consecutive columns starting at column {@code A}. It is {@link #compile(Sheet) compiled} against a
+ * sheet once, which resolves every cell-style up front, so that the writer sets each value with the matching
+ * {@code Cell.setCellValue} overload directly, without inspecting the value or boxing it.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final RowSchema schema = new RowSchema()
+ *                         .addColumn(Type.NUMBER)
+ *                         .addColumn(Type.STRING, NullPolicy.BLANK)
+ *                         .addColumn(Type.DATE)
+ *                         .addColumn(Type.NUMBER, new StyleBuilder().setDataFormat((short) 4)); // #,##0.00
+ *
+ *   final RowWriter writer = schema.compile(sheet);
+ *
+ *   for (final Order order : orders)
+ *       writer.startRow()
+ *             .writeNumber(order.getId())
+ *             .writeString(order.getCustomer())
+ *             .writeDate(order.getDate())
+ *             .writeNumber(order.getAmount());
+ * </pre>
+ *
+ * Instances are reusable and can be compiled against any number of sheets. Writers take a snapshot of the schema,
+ * subsequent changes do not affect writers which have already been compiled.
+ *
+ * @author Zhenya Leonov
+ */
+public final class RowSchema {
+
+    /**
+     * The type of the values of a column.
+     */
+    public enum Type {
+        /**
+         * {@code double} and {@code long} values, written as numeric cells.
+         */
+        NUMBER,
+
+        /**
+         * {@code CharSequence} values, written as string cells as they are.
+         */
+        STRING,
+
+        /**
+         * {@code boolean} values, written as boolean cells.
+         */
+        BOOLEAN,
+
+        /**
+         * {@code LocalDate} values, written as numeric cells with a date format.
+         */
+        DATE,
+
+        /**
+         * {@code LocalDateTime} values, written as numeric cells with a date-time format.
+         */
+        DATE_TIME;
+    }
+
+    /**
+     * What is written for a {@code null} value.
+     */
+    public enum NullPolicy {
+        /**
+         * No cell is created.
+         */
+        SKIP,
+
+        /**
+         * A blank cell with the style of the column is created.
+         */
+        BLANK,
+
+        /**
+         * A {@code NullPointerException} is thrown.
+         */
+        REJECT;
+    }
+
+    private static final int MAX_COLUMNS = Format.OFFICE_OPEN_XML.getMaxColNum();
+
+    private int            count    = 0;
+    private Type[]         types    = new Type[8];
+    private StyleBuilder[] styles   = new StyleBuilder[8];
+    private NullPolicy[]   policies = new NullPolicy[8];
+
+    /**
+     * Creates a new {@code RowSchema} with no columns.
+     */
+    public RowSchema() {
+    }
+
+    /**
+     * Adds a column which skips {@code null} values and uses the default style of the sheet column, or a built-in date
+     * format for {@code DATE} and {@code DATE_TIME} columns without one.
+     *
+     * @param type the type of the column
+     * @return this {@code RowSchema} instance
+     */
+    public RowSchema addColumn(final Type type) {
+        return addColumn(type, null, NullPolicy.SKIP);
+    }
+
+    /**
+     * Adds a column which uses the specified null policy.
+     *
+     * @param type  the type of the column
+     * @param nulls what is written for {@code null} values
+     * @return this {@code RowSchema} instance
+     */
+    public RowSchema addColumn(final Type type, final NullPolicy nulls) {
+        return addColumn(type, null, nulls);
+    }
+
+    /**
+     * Adds a column which uses the specified style and skips {@code null} values.
+     *
+     * @param type  the type of the column
+     * @param style the style of the column, which is {@link StyleBuilder#getOrCreate(org.apache.poi.ss.usermodel.Workbook)
+     *              interned} in the workbook when the schema is compiled
+     * @return this {@code RowSchema} instance
+     */
+    public RowSchema addColumn(final Type type, final StyleBuilder style) {
+        checkNotNull(style, "style == null");
+        return addColumn(type, style, NullPolicy.SKIP);
+    }
+
+    /**
+     * Adds a column which uses the specified style and null policy.
+     *
+     * @param type  the type of the column
+     * @param style the style of the column or {@code null} to use the default
+     * @param nulls what is written for {@code null} values
+     * @return this {@code RowSchema} instance
+     */
+    public RowSchema addColumn(final Type type, final StyleBuilder style, final NullPolicy nulls) {
+        checkNotNull(type, "type == null");
+        checkNotNull(nulls, "nulls == null");
+        checkArgument(count < MAX_COLUMNS, "too many columns");
+
+        if (count == types.length) {
+            types    = Arrays.copyOf(types, count * 2);
+            styles   = Arrays.copyOf(styles, count * 2);
+            policies = Arrays.copyOf(policies, count * 2);
+        }
+
+        types[count]    = type;
+        styles[count]   = style == null ? null : style.newStyleBuilder();
+        policies[count] = nulls;
+
+        count++;
+        return this;
+    }
+
+    /**
+     * Returns the number of columns in this schema.
+     *
+     * @return the number of columns in this schema
+     */
+    public int getColumnCount() {
+        return count;
+    }
+
+    /**
+     * Returns the type of the specified column.
+     *
+     * @param column the 0-based column index
+     * @return the type of the specified column
+     */
+    public Type getType(final int column) {
+        checkElementIndex(column, count);
+        return types[column];
+    }
+
+    /**
+     * Returns a new {@code RowWriter} which appends rows with this schema to the specified sheet, after its last row.
+     *
+     * @param sheet the sheet
+     * @return a new {@code RowWriter} which appends rows with this schema to the specified sheet
+     */
+    public RowWriter compile(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+        checkArgument(count > 0, "no columns");
+        return new RowWriter(sheet, Arrays.copyOf(types, count), Arrays.copyOf(styles, count), Arrays.copyOf(policies, count));
+    }
+
+}
@@ -0,0 +1,103 @@
+package software.leonov.cells;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+
+/**
+ * A {@code Spliterator} over the rows of a sheet which splits the range of row indexes in half, looking up each row
+ * with {@link Sheet#getRow(int)}. Row indexes which are not defined in the sheet are skipped.
+ * <p>
+ * The range is fixed when the spliterator is created. If every row in the range is defined the spliterator is
+ * {@link #SIZED} and {@link #SUBSIZED}, otherwise its size is an estimate.
+ * <p>
+ * {@code Sheet.getRow(int)} is a read-only lookup in all POI implementations, so the rows may be traversed by several
+ * threads at once as long as the sheet is not modified.
+ *
+ * @author Zhenya Leonov
+ */
+final class RowSpliterator implements Spliterator<Row> {
+
+    private final Sheet   sheet;
+    private final boolean dense;
+    private int           index; // inclusive
+    private final int     end;   // exclusive
+
+    /**
+     * Creates a new {@code Spliterator} over all the rows of the specified sheet.
+     *
+     * @param sheet the specified sheet
+     */
+    RowSpliterator(final Sheet sheet) {
+        this.sheet = sheet;
+
+        final int first = sheet.getFirstRowNum();
+        final int last  = sheet.getLastRowNum();
+
+        if (sheet.getPhysicalNumberOfRows() == 0) {
+            this.index = 0;
+            this.end   = 0;
+            this.dense = true;
+        } else {
+            this.index = first;
+            this.end   = last + 1;
+            // Rows which have been flushed from an SXSSFSheet are counted but can no longer be retrieved
+            this.dense = !(sheet instanceof SXSSFSheet) && sheet.getPhysicalNumberOfRows() == end - index;
+        }
+    }
+
+    private RowSpliterator(final Sheet sheet, final int index, final int end, final boolean dense) {
+        this.sheet = sheet;
+        this.index = index;
+        this.end   = end;
+        this.dense = dense;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Row> action) {
+        while (index < end) {
+            final Row row = sheet.getRow(index++);
+            if (row != null) {
+                action.accept(row);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super Row> action) {
+        final int end = this.end;
+        for (int i = index; i < end; i++) {
+            final Row row = sheet.getRow(i);
+            if (row != null)
+                action.accept(row);
+        }
+        index = end;
+    }
+
+    @Override
+    public Spliterator<Row> trySplit() {
+        final int mid = (index + end) >>> 1;
+        if (mid <= index)
+            return null;
+
+        final Spliterator<Row> prefix = new RowSpliterator(sheet, index, mid, dense);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return dense ? ORDERED | NONNULL | SIZED | SUBSIZED : ORDERED | NONNULL;
+    }
+
+}
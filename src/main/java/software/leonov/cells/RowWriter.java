@@ -0,0 +1,263 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import software.leonov.cells.RowSchema.NullPolicy;
+import software.leonov.cells.RowSchema.Type;
+import software.leonov.cells.util.StyleBuilder;
+
+/**
+ * A forward-only writer of typed rows, {@link RowSchema#compile(Sheet) compiled} from a {@link RowSchema}.
+ * <p>
+ * Unlike {@link Rows#setValues(Row, int, Iterable)}, which inspects every value with an {@code instanceof} chain,
+ * checks whether its string representation is blank, and trims it, a {@code RowWriter} knows the type and style of
+ * every column in advance. Each {@code write} method sets the next cell of the current row with the matching
+ * {@code Cell.setCellValue} overload and the pre-resolved style of its column. Primitive values are never boxed, dates
+ * are converted to serial numbers arithmetically, and strings are written as they are.
+ * <p>
+ * Cells are written in schema order. Writing a value of the wrong type for the next column throws an
+ * {@code IllegalArgumentException}. Instances are not thread-safe.
+ *
+ * @author Zhenya Leonov
+ */
+public final class RowWriter {
+
+    private final Sheet        sheet;
+    private final Type[]       types;
+    private final CellStyle[]  styles;
+    private final NullPolicy[] policies;
+    private final boolean      date1904;
+
+    private int          row     = -1;
+    private int          nextRow;
+    private Row          current = null;
+    private int          column  = 0;
+    private ColumnWidths widths  = null;
+
+    RowWriter(final Sheet sheet, final Type[] types, final StyleBuilder[] builders, final NullPolicy[] policies) {
+        final Workbook workbook = sheet.getWorkbook();
+
+        this.sheet    = sheet;
+        this.types    = types;
+        this.styles   = new CellStyle[types.length];
+        this.policies = policies;
+        this.date1904 = Workbooks.isDate1904(workbook);
+        this.nextRow  = sheet.getPhysicalNumberOfRows() == 0 ? 0 : sheet.getLastRowNum() + 1;
+
+        for (int i = 0; i < types.length; i++) {
+            styles[i] = builders[i] != null ? builders[i].getOrCreate(workbook) : Sheets.getColumnStyle(sheet, i);
+
+            if (styles[i] == null && types[i] == Type.DATE)
+                styles[i] = new StyleBuilder().setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy")).getOrCreate(workbook);
+            else if (styles[i] == null && types[i] == Type.DATE_TIME)
+                styles[i] = new StyleBuilder().setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy h:mm")).getOrCreate(workbook);
+        }
+    }
+
+    /**
+     * Returns the sheet this writer writes to.
+     *
+     * @return the sheet this writer writes to
+     */
+    public Sheet getSheet() {
+        return sheet;
+    }
+
+    /**
+     * Returns the current row or {@code null} if no row has been started.
+     *
+     * @return the current row or {@code null} if no row has been started
+     */
+    public Row getRow() {
+        return current;
+    }
+
+    /**
+     * Sets the {@code ColumnWidths} which tracks the width of every value written by this writer, so that the columns can
+     * later be {@link Sheets#autoSizeColumns(Sheet, ColumnWidths) sized to fit} without measuring every cell again. This is
+     * the only way to size the columns of rows which an {@link org.apache.poi.xssf.streaming.SXSSFSheet SXSSFSheet} flushes
+     * to disk.
+     *
+     * @param widths the {@code ColumnWidths} or {@code null} to stop tracking widths
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter setColumnWidths(final ColumnWidths widths) {
+        this.widths = widths;
+        return this;
+    }
+
+    /**
+     * Starts the row following the current row, or following the last row of the sheet when the writer was compiled.
+     *
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter startRow() {
+        return startRow(nextRow);
+    }
+
+    /**
+     * Starts the specified row, which must not exist yet. Rows between the current row and the specified row are left
+     * empty.
+     *
+     * @param index the 0-based index of the row, which must be greater than the index of the current row
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter startRow(final int index) {
+        checkArgument(index > row, "index <= current row");
+        checkArgument(sheet.getRow(index) == null, "row %s already exists", index);
+
+        current = sheet.createRow(index);
+        row     = index;
+        nextRow = index + 1;
+        column  = 0;
+        return this;
+    }
+
+    /**
+     * Writes a numeric value to the next cell, which must be a {@link Type#NUMBER NUMBER} column.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeNumber(final double value) {
+        final Cell cell = newCell(Type.NUMBER, CellType.NUMERIC);
+        cell.setCellValue(value);
+        return track(cell);
+    }
+
+    /**
+     * Writes a numeric value to the next cell, which must be a {@link Type#NUMBER NUMBER} column. Excel stores all numbers
+     * as {@code double}s, values beyond &plusmn;2<sup>53</sup> lose precision.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeNumber(final long value) {
+        final Cell cell = newCell(Type.NUMBER, CellType.NUMERIC);
+        cell.setCellValue((double) value);
+        return track(cell);
+    }
+
+    /**
+     * Writes a boolean value to the next cell, which must be a {@link Type#BOOLEAN BOOLEAN} column.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeBoolean(final boolean value) {
+        final Cell cell = newCell(Type.BOOLEAN, CellType.BOOLEAN);
+        cell.setCellValue(value);
+        return track(cell);
+    }
+
+    /**
+     * Writes a string value to the next cell, which must be a {@link Type#STRING STRING} column. A {@code null} value is
+     * handled according to the {@link NullPolicy} of the column.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeString(final CharSequence value) {
+        if (value == null)
+            return writeNull(Type.STRING);
+
+        final Cell cell = newCell(Type.STRING, CellType.STRING);
+        cell.setCellValue(value.toString());
+        return track(cell);
+    }
+
+    /**
+     * Writes a date value to the next cell, which must be a {@link Type#DATE DATE} column. A {@code null} value is handled
+     * according to the {@link NullPolicy} of the column.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeDate(final LocalDate value) {
+        if (value == null)
+            return writeNull(Type.DATE);
+
+        final Cell cell = newCell(Type.DATE, CellType.NUMERIC);
+        cell.setCellValue(SerialDates.toSerial(value, date1904));
+        return track(cell);
+    }
+
+    /**
+     * Writes a date-time value to the next cell, which must be a {@link Type#DATE_TIME DATE_TIME} column. A {@code null}
+     * value is handled according to the {@link NullPolicy} of the column.
+     *
+     * @param value the value
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeDate(final LocalDateTime value) {
+        if (value == null)
+            return writeNull(Type.DATE_TIME);
+
+        final Cell cell = newCell(Type.DATE_TIME, CellType.NUMERIC);
+        cell.setCellValue(SerialDates.toSerial(value, date1904));
+        return track(cell);
+    }
+
+    /**
+     * Writes a {@code null} value to the next cell, of any type, according to the {@link NullPolicy} of its column.
+     *
+     * @return this {@code RowWriter} instance
+     */
+    public RowWriter writeNull() {
+        checkColumn();
+        return writeNull(types[column]);
+    }
+
+    private RowWriter writeNull(final Type type) {
+        checkColumn();
+        checkArgument(types[column] == type, "column %s is %s", column, types[column]);
+
+        switch (policies[column]) {
+        case SKIP:
+            break;
+        case BLANK:
+            newCell(type, CellType.BLANK);
+            return this;
+        default:
+            throw new NullPointerException("column " + column + " is null");
+        }
+
+        column++;
+        return this;
+    }
+
+    private Cell newCell(final Type type, final CellType cellType) {
+        checkColumn();
+        checkArgument(types[column] == type, "column %s is %s", column, types[column]);
+
+        final Cell      cell  = current.createCell(column, cellType);
+        final CellStyle style = styles[column++];
+        if (style != null)
+            cell.setCellStyle(style);
+        return cell;
+    }
+
+    private RowWriter track(final Cell cell) {
+        if (widths != null)
+            widths.update(cell);
+        return this;
+    }
+
+    private void checkColumn() {
+        checkState(current != null, "no current row");
+        checkState(column < types.length, "too many columns");
+    }
+
+}
@@ -4,7 +4,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
 import static software.leonov.cells.Sheets.getColumnStyle;
-import static software.leonov.common.base.Obj.coalesce;
 
 import java.time.LocalDateTime;
 import java.util.Calendar;
@@ -79,7 +78,8 @@ public final class Rows {
 
         if (cell == null) {
             cell = row.createCell(index);
-            final CellStyle style = coalesce(getRowStyle(row), getColumnStyle(getSheetOf(row), index));
+            final CellStyle rowStyle = getRowStyle(row);
+            final CellStyle style    = rowStyle != null ? rowStyle : getColumnStyle(getSheetOf(row), index);
             if (style != null)
                 cell.setCellStyle(style);
         }
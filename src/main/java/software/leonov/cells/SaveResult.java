@@ -0,0 +1,56 @@
+package software.leonov.cells;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The outcome of {@link Workbooks#saveAtomically(org.apache.poi.ss.usermodel.Workbook, Path, boolean, WriteOptions)
+ * saving a workbook atomically}: the file which was written, its size, and how long it took.
+ *
+ * @author Zhenya Leonov
+ */
+public final class SaveResult {
+
+    private final Path     path;
+    private final long     bytes;
+    private final Duration elapsed;
+
+    SaveResult(final Path path, final long bytes, final Duration elapsed) {
+        this.path    = path;
+        this.bytes   = bytes;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the path of the saved file.
+     *
+     * @return the path of the saved file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes written
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the time it took to write, sync, and move the file.
+     *
+     * @return the time it took to write, sync, and move the file
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + bytes + " bytes in " + elapsed.toMillis() + " ms)";
+    }
+
+}
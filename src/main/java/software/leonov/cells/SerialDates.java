@@ -0,0 +1,247 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+/**
+ * Static methods for converting between Excel serial dates and {@code java.time} values arithmetically.
+ * <p>
+ * Excel stores dates as the number of days since the start of its date system, with the time of day as the fractional
+ * part. In the 1900 date system day 1 is January 1, 1900, and for compatibility with Lotus 1-2-3 day 60 is the
+ * non-existent February 29, 1900, which is treated as March 1. In the 1904 date system day 0 is January 1, 1904.
+ * {@link Workbooks#isDate1904(org.apache.poi.ss.usermodel.Workbook)} returns the date system of a workbook.
+ * <p>
+ * The methods in this class produce the same results as {@link DateUtil#getLocalDateTime(double, boolean)}, including
+ * rounding the time of day to the nearest millisecond, without going through a {@code Calendar}. Unlike
+ * {@link java.time.OffsetDateTime#now()} based conversions, local date-times are resolved against the rules of an
+ * explicit {@code ZoneId} and are therefore correct on both sides of daylight saving time transitions.
+ *
+ * @author Zhenya Leonov
+ */
+final public class SerialDates {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long NANOS_PER_DAY  = 86_400_000_000_000L;
+
+    private static final long EPOCH_DAY_1900 = -25569L; // 1899-12-30, day 0 for serial dates on or after 1900-03-01
+    private static final long EPOCH_DAY_1904 = -24107L; // 1904-01-01
+
+    private SerialDates() {
+    }
+
+    /**
+     * Returns the date of the specified serial date, ignoring the time of day.
+     * <p>
+     * The time of day is rounded to the nearest millisecond first, consistent with
+     * {@link #toLocalDateTime(double, boolean)}, so a serial date within half a millisecond of midnight is the next day.
+     *
+     * @param serial   the serial date
+     * @param date1904 whether the serial date uses the 1904 date system
+     * @return the date of the specified serial date
+     * @throws IllegalArgumentException if the serial date is negative or not a number
+     */
+    public static LocalDate toLocalDate(final double serial, final boolean date1904) {
+        checkSerial(serial);
+        return LocalDate.ofEpochDay(toLocalEpochDay(serial, date1904));
+    }
+
+    /**
+     * Returns the date-time of the specified serial date.
+     *
+     * @param serial   the serial date
+     * @param date1904 whether the serial date uses the 1904 date system
+     * @return the date-time of the specified serial date
+     * @throws IllegalArgumentException if the serial date is negative or not a number
+     */
+    public static LocalDateTime toLocalDateTime(final double serial, final boolean date1904) {
+        checkSerial(serial);
+        final long millis = toLocalEpochMilli(serial, date1904);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the instant of the specified serial date in the given time-zone.
+     *
+     * @param serial   the serial date
+     * @param date1904 whether the serial date uses the 1904 date system
+     * @param zone     the time-zone of the serial date
+     * @return the instant of the specified serial date in the given time-zone
+     * @throws IllegalArgumentException if the serial date is negative or not a number
+     */
+    public static Instant toInstant(final double serial, final boolean date1904, final ZoneId zone) {
+        checkNotNull(zone, "zone == null");
+        return toLocalDateTime(serial, date1904).atZone(zone).toInstant();
+    }
+
+    /**
+     * Returns the serial date of the specified date.
+     *
+     * @param date     the date
+     * @param date1904 whether to use the 1904 date system
+     * @return the serial date of the specified date
+     * @throws IllegalArgumentException if the date is before the start of the date system
+     */
+    public static double toSerial(final LocalDate date, final boolean date1904) {
+        checkNotNull(date, "date == null");
+        return toSerialDays(date.toEpochDay(), date1904);
+    }
+
+    /**
+     * Returns the serial date of the specified date-time.
+     *
+     * @param dateTime the date-time
+     * @param date1904 whether to use the 1904 date system
+     * @return the serial date of the specified date-time
+     * @throws IllegalArgumentException if the date-time is before the start of the date system
+     */
+    public static double toSerial(final LocalDateTime dateTime, final boolean date1904) {
+        checkNotNull(dateTime, "dateTime == null");
+        return toSerialDays(dateTime.toLocalDate().toEpochDay(), date1904) + dateTime.toLocalTime().toNanoOfDay() / (double) NANOS_PER_DAY;
+    }
+
+    /**
+     * Converts the specified serial dates to epoch days, the number of days since 1970-01-01, ignoring the time of day.
+     * The time of day is rounded to the nearest millisecond first, consistent with {@link #toLocalDate(double, boolean)}.
+     * <p>
+     * This method does not allocate. The serial dates are not validated: the results for negative values or {@code NaN}
+     * are unspecified, as are the values of blank entries in a {@link ColumnBatch} column.
+     *
+     * @param serials  the serial dates
+     * @param length   the number of serial dates to convert
+     * @param date1904 whether the serial dates use the 1904 date system
+     * @param days     the array to store the epoch days in
+     * @return the specified array of epoch days
+     */
+    public static long[] toEpochDays(final double[] serials, final int length, final boolean date1904, final long[] days) {
+        checkNotNull(serials, "serials == null");
+        checkNotNull(days, "days == null");
+        checkPositionIndex(length, serials.length);
+        checkPositionIndex(length, days.length);
+
+        for (int i = 0; i < length; i++)
+            days[i] = toLocalEpochDay(serials[i], date1904);
+
+        return days;
+    }
+
+    /**
+     * Converts the specified serial dates in the given time-zone to epoch milliseconds, the number of milliseconds since
+     * 1970-01-01T00:00Z.
+     * <p>
+     * Local date-times which fall into a gap, such as when clocks are set forward, are shifted by the length of the gap.
+     * Local date-times which fall into an overlap, such as when clocks are set back, use the earlier offset. This is
+     * consistent with {@link LocalDateTime#atZone(ZoneId)}.
+     * <p>
+     * This method does not allocate while consecutive values fall between the same pair of time-zone transitions. The
+     * serial dates are not validated: the results for negative values or {@code NaN} are unspecified, as are the values of
+     * blank entries in a {@link ColumnBatch} column.
+     *
+     * @param serials  the serial dates
+     * @param length   the number of serial dates to convert
+     * @param date1904 whether the serial dates use the 1904 date system
+     * @param zone     the time-zone of the serial dates
+     * @param millis   the array to store the epoch milliseconds in
+     * @return the specified array of epoch milliseconds
+     */
+    public static long[] toEpochMillis(final double[] serials, final int length, final boolean date1904, final ZoneId zone, final long[] millis) {
+        checkNotNull(serials, "serials == null");
+        checkNotNull(zone, "zone == null");
+        checkNotNull(millis, "millis == null");
+        checkPositionIndex(length, serials.length);
+        checkPositionIndex(length, millis.length);
+
+        final ZoneOffsets offsets = new ZoneOffsets(zone.getRules());
+
+        for (int i = 0; i < length; i++) {
+            final long local = toLocalEpochMilli(serials[i], date1904);
+            millis[i] = local - offsets.getOffsetSeconds(Math.floorDiv(local, 1000L)) * 1000L;
+        }
+
+        return millis;
+    }
+
+    // Returns the days since 1970-01-01 of the serial date rounded to the millisecond
+    private static long toLocalEpochDay(final double serial, final boolean date1904) {
+        return Math.floorDiv(toLocalEpochMilli(serial, date1904), MILLIS_PER_DAY);
+    }
+
+    // Returns the milliseconds since 1970-01-01T00:00 on the local time-line
+    private static long toLocalEpochMilli(final double serial, final boolean date1904) {
+        final long days = (long) serial;
+        return toEpochDay(days, date1904) * MILLIS_PER_DAY + (long) ((serial - days) * MILLIS_PER_DAY + 0.5);
+    }
+
+    private static long toSerialDays(final long epochDay, final boolean date1904) {
+        final long days = date1904 ? epochDay - EPOCH_DAY_1904 : epochDay - EPOCH_DAY_1900;
+        checkArgument(days >= (date1904 ? 0 : 2), "date is before the start of the %s date system", date1904 ? 1904 : 1900);
+        return date1904 || days >= 61 ? days : days - 1; // before the non-existent 1900-02-29
+    }
+
+    private static long toEpochDay(final long days, final boolean date1904) {
+        if (date1904)
+            return EPOCH_DAY_1904 + days;
+        else if (days < 61) // before the non-existent 1900-02-29
+            return EPOCH_DAY_1900 + 1 + days;
+        else
+            return EPOCH_DAY_1900 + days;
+    }
+
+    private static void checkSerial(final double serial) {
+        checkArgument(serial >= 0, "invalid serial date: %s", serial);
+    }
+
+    /**
+     * Resolves local date-times to offsets, caching the range of local date-times between two transitions.
+     */
+    private static final class ZoneOffsets {
+
+        private final ZoneRules rules;
+
+        private long from   = Long.MAX_VALUE; // the cached range of local epoch seconds, inclusive
+        private long to     = Long.MIN_VALUE; // exclusive
+        private int  offset = 0;
+
+        ZoneOffsets(final ZoneRules rules) {
+            this.rules = rules;
+            if (rules.isFixedOffset()) {
+                from   = Long.MIN_VALUE;
+                to     = Long.MAX_VALUE;
+                offset = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+            }
+        }
+
+        int getOffsetSeconds(final long local) {
+            if (local >= from && local < to)
+                return offset;
+
+            final LocalDateTime dateTime = LocalDateTime.ofEpochSecond(local, 0, ZoneOffset.UTC);
+            final int           offset   = rules.getOffset(dateTime).getTotalSeconds();
+
+            if (rules.getValidOffsets(dateTime).size() == 1) {
+                final Instant              instant  = Instant.ofEpochSecond(local - offset);
+                final ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+                final ZoneOffsetTransition next     = rules.nextTransition(instant);
+
+                // Only local date-times which map to a single offset are cached, gaps and overlaps are always resolved
+                this.from   = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() + Math.max(previous.getOffsetBefore().getTotalSeconds(), previous.getOffsetAfter().getTotalSeconds());
+                this.to     = next == null ? Long.MAX_VALUE : next.toEpochSecond() + Math.min(next.getOffsetBefore().getTotalSeconds(), next.getOffsetAfter().getTotalSeconds());
+                this.offset = offset;
+            }
+
+            return offset;
+        }
+
+    }
+
+}
@@ -5,8 +5,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.poi.ss.util.CellReference.convertColStringToIndex;
 
 import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.ss.usermodel.Cell;
@@ -207,7 +212,8 @@ final public class Sheets {
      * The content of merged cells is ignored.
      * <p>
      * This process can be relatively slow on large sheets, so this should normally only be called once per column, at the
-     * end of your processing.
+     * end of your processing. See {@link #estimateColumnWidths(Sheet)} and {@link #autoSizeColumns(Sheet, ColumnWidths)}
+     * for faster alternatives.
      * 
      * @param sheet the sheet where the column is located
      * @return the specified sheet
@@ -227,6 +233,50 @@ final public class Sheets {
         return sheet;
     }
 
+    /**
+     * Adjusts the width of all columns to fit their contents, estimated from the widths of the characters of their
+     * formatted values rather than measured with AWT.
+     * <p>
+     * This method is equivalent to {@link #autoSizeColumns(Sheet, ColumnWidths)} with a {@link ColumnWidths} which has
+     * been updated with every row of the sheet. It is much faster than {@link #autoSizeColumns(Sheet)} and does not
+     * depend on the fonts installed on the system, at the cost of some accuracy. Rows which an {@link SXSSFSheet} has
+     * already flushed to disk are not included, track them with a {@code ColumnWidths} while they are written instead.
+     * 
+     * @param sheet the specified sheet
+     * @return the specified sheet
+     */
+    public static Sheet estimateColumnWidths(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+
+        final ColumnWidths widths = new ColumnWidths(sheet.getWorkbook());
+        for (final Row row : sheet)
+            widths.update(row);
+
+        return autoSizeColumns(sheet, widths);
+    }
+
+    /**
+     * Adjusts the width of the columns of the specified sheet to the widths tracked by the specified {@code ColumnWidths},
+     * with the same padding and maximum width as {@link #autoSizeColumns(Sheet)}. Columns without any tracked cells are
+     * left unchanged.
+     * 
+     * @param sheet  the specified sheet
+     * @param widths the tracked column widths
+     * @return the specified sheet
+     */
+    public static Sheet autoSizeColumns(final Sheet sheet, final ColumnWidths widths) {
+        checkNotNull(sheet, "sheet == null");
+        checkNotNull(widths, "widths == null");
+
+        for (int index = 0; index < widths.getColumnCount(); index++) {
+            final int width = widths.getWidth(index);
+            if (width > 0)
+                sheet.setColumnWidth(index, Math.min(width + DEFAULT_PADDING, MAX_COLUMN_WIDTH));
+        }
+
+        return sheet;
+    }
+
     private static final int DEFAULT_PADDING  = 640;
     private static final int MAX_COLUMN_WIDTH = 255 * 256;
 
@@ -272,6 +322,39 @@ final public class Sheets {
         return CellUtil.getRow(index, sheet);
     }
 
+    /**
+     * Returns a sequential {@code Stream} of the rows in the specified sheet, in order of their row index.
+     * <p>
+     * The stream is backed by a {@code Spliterator} which splits the range of row indexes rather than iterating over the
+     * sheet. It is {@link java.util.Spliterator#SIZED SIZED} if every row between the first and the last row is defined.
+     * Calling {@link Stream#parallel()} on the returned stream is equivalent to calling {@link #parallelRows(Sheet)}.
+     * <p>
+     * The sheet must not be modified while the stream is being consumed.
+     * 
+     * @param sheet the specified sheet
+     * @return a sequential {@code Stream} of the rows in the specified sheet
+     */
+    public static Stream<Row> rows(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+        return StreamSupport.stream(new RowSpliterator(sheet), false);
+    }
+
+    /**
+     * Returns a parallel {@code Stream} of the rows in the specified sheet.
+     * <p>
+     * Rows are only read, never created, so they can safely be validated or transformed by several threads at once as
+     * long as neither the sheet nor its rows and cells are modified while the stream is being consumed. Reading cell
+     * values with {@link Cells#formatValue(Cell)} is thread-safe. Rows which have been flushed to disk by an
+     * {@link SXSSFSheet} are not included.
+     * 
+     * @param sheet the specified sheet
+     * @return a parallel {@code Stream} of the rows in the specified sheet
+     */
+    public static Stream<Row> parallelRows(final Sheet sheet) {
+        checkNotNull(sheet, "sheet == null");
+        return StreamSupport.stream(new RowSpliterator(sheet), true);
+    }
+
     /**
      * Returns the workbook that contains the specified sheet. If the sheet has been deleted this method will result in an
      * exception.
@@ -372,6 +455,7 @@ final public class Sheets {
             }
 
         sheet.setDefaultColumnStyle(index, style);
+        ColumnStyles.of(sheet).put(index, style.getIndex() & 0xFFFF); // NONE is -1
 
         return sheet;
     }
@@ -396,6 +480,10 @@ final public class Sheets {
      * <b>Note:</b> While the API specification for {@link Sheet#getColumnStyle(int)} dictates returning {@code null} if no
      * column style is set, some implementations incorrectly return the default workbook style. This method explicitly
      * checks if the retrieved style is the default workbook style, and in such case returns {@code null}.
+     * <p>
+     * The style of each column is looked up once per sheet and then kept in a table which is updated by the
+     * {@link #setColumnStyle(Sheet, int, CellStyle, boolean) setColumnStyle} methods, so that subsequent calls are an array
+     * lookup. Column styles set directly through POI after the column was looked up are not seen.
      * 
      * @param sheet the specified sheet
      * @param index the 0-based column index
@@ -405,16 +493,17 @@ final public class Sheets {
         checkNotNull(sheet, "sheet == null");
         checkArgument(index >= 0, "index < 0");
 
-        final CellStyle style = sheet.getColumnStyle(index);
+        final ColumnStyles styles = ColumnStyles.of(sheet);
+        final int          cached = styles.get(index);
 
-        if (sheet instanceof HSSFSheet)
-            return style;
-        else if (sheet instanceof XSSFSheet || sheet instanceof SXSSFSheet) {
-            final XSSFSheet    xssfSheet = sheet instanceof XSSFSheet ? (XSSFSheet) sheet : getXSSFSheet((SXSSFSheet) sheet);
-            final ColumnHelper helper    = xssfSheet.getColumnHelper();
-            return sheet.getWorkbook().getCellStyleAt(helper.getColDefaultStyle(index));
-        } else
-            throw new IllegalArgumentException("unsupported sheet class: " + sheet.getClass().getSimpleName());
+        if (cached == ColumnStyles.NONE)
+            return null;
+        else if (cached != ColumnStyles.UNRESOLVED)
+            return sheet.getWorkbook().getCellStyleAt(cached);
+
+        final CellStyle style = findColumnStyle(sheet, index);
+        styles.put(index, style == null ? ColumnStyles.NONE : style.getIndex() & 0xFFFF);
+        return style;
     }
 
     /**
@@ -698,6 +787,48 @@ final public class Sheets {
         return sheet;
     }
 
+    /**
+     * Appends the rows of the specified {@code ResultSet} to the specified sheet, preceded by a header row of the column
+     * labels, and returns the sheets which were written to.
+     * <p>
+     * The type of each column is determined once from the {@code ResultSetMetaData}: numeric columns are written as
+     * numbers, {@code BIT} and {@code BOOLEAN} columns as booleans, {@code DATE} and {@code TIMESTAMP} columns as dates
+     * with the default date and date-time formats (unless the sheet defines column styles), and all other columns as
+     * strings. {@code NULL} values are skipped. Numbers are written as {@code double}s, {@code BIGINT} and {@code DECIMAL}
+     * values with more than 15 significant digits lose precision.
+     * <p>
+     * Rows are fetched from the result set on a separate thread, in batches of its
+     * {@link ResultSet#setFetchSize(int) fetch size} (1000 if the fetch size is not set), while the previous batch is being
+     * written to the sheet. The result set must not be used by other threads until this method returns, and is not
+     * closed.
+     * <p>
+     * When the sheet reaches the {@link Format#getMaxRowNum() maximum number of rows} of the workbook's format the
+     * remaining rows are written to new sheets, each starting with its own header row, named after the specified sheet:
+     * "<i>name</i> (2)", "<i>name</i> (3)", and so on. Use a {@link Format#STREAMING_OFFICE_OPEN_XML streaming} workbook
+     * for large result sets.
+     * 
+     * @param sheet the sheet to write to
+     * @param rs    the result set to export
+     * @return the sheets which were written to, starting with the specified sheet
+     * @throws SQLException if a database access error occurs
+     */
+    public static List<Sheet> writeResultSet(final Sheet sheet, final ResultSet rs) throws SQLException {
+        checkNotNull(sheet, "sheet == null");
+        checkNotNull(rs, "rs == null");
+        return new ResultSetExporter(sheet, rs).export();
+    }
+
+    private static CellStyle findColumnStyle(final Sheet sheet, final int index) {
+        if (sheet instanceof HSSFSheet)
+            return sheet.getColumnStyle(index);
+        else if (sheet instanceof XSSFSheet || sheet instanceof SXSSFSheet) {
+            final XSSFSheet    xssfSheet = sheet instanceof XSSFSheet ? (XSSFSheet) sheet : getXSSFSheet((SXSSFSheet) sheet);
+            final ColumnHelper helper    = xssfSheet.getColumnHelper();
+            return sheet.getWorkbook().getCellStyleAt(helper.getColDefaultStyle(index));
+        } else
+            throw new IllegalArgumentException("unsupported sheet class: " + sheet.getClass().getSimpleName());
+    }
+
     private static XSSFSheet getXSSFSheet(final SXSSFSheet sheet) {
         try {
             final Field field = sheet.getClass().getDeclaredField("_sh");
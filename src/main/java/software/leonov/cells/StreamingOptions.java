@@ -0,0 +1,172 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Options which control the memory and disk usage of {@link Workbooks.Format#STREAMING_OFFICE_OPEN_XML streaming}
+ * workbooks created by {@link Workbooks#newWorkbook(StreamingOptions, String...)} and
+ * {@link Workbooks#open(InputStream, StreamingOptions)}.
+ * <p>
+ * An {@link SXSSFWorkbook} keeps a window of the most recently written rows of each sheet in memory and flushes older
+ * rows to a temporary file. A larger window uses more memory but allows more rows to be revisited, a smaller window
+ * writes to disk more often. Compressing the temporary files reduces disk usage at the cost of CPU time. Wide sheets with
+ * many repeated strings benefit from a shared strings table, which is kept in memory but makes both the temporary files
+ * and the final file smaller.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final StreamingOptions options = new StreamingOptions()
+ *                         .setWindowSize(1000)
+ *                         .setCompressTempFiles(true)
+ *                         .setTempDirectory(Paths.get("/scratch"));
+ *
+ *   final Workbook workbook = Workbooks.newWorkbook(options, "Orders");
+ * </pre>
+ *
+ * Instances are reusable. Workbooks take a snapshot of the current settings when they are created.
+ *
+ * @author Zhenya Leonov
+ */
+public final class StreamingOptions {
+
+    private int       windowSize        = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+    private boolean   compressTempFiles = false;
+    private boolean   sharedStrings     = false;
+    private Path      tempDirectory     = null;
+    private Zip64Mode zip64Mode         = Zip64Mode.AsNeeded;
+
+    /**
+     * Creates a new {@code StreamingOptions} with the same defaults as {@link SXSSFWorkbook#SXSSFWorkbook()}: a window of
+     * 100 rows, uncompressed temporary files in the default temporary-file directory, no shared strings table, and zip64
+     * extensions as needed.
+     */
+    public StreamingOptions() {
+    }
+
+    /**
+     * Clears all settings, returning this instance to its initial state.
+     *
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions clear() {
+        this.windowSize        = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+        this.compressTempFiles = false;
+        this.sharedStrings     = false;
+        this.tempDirectory     = null;
+        this.zip64Mode         = Zip64Mode.AsNeeded;
+        return this;
+    }
+
+    /**
+     * Sets the number of rows of each sheet which are kept in memory before older rows are flushed to disk. A value of -1
+     * keeps every row in memory.
+     *
+     * @param rows the number of rows to keep in memory or -1
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions setWindowSize(final int rows) {
+        checkArgument(rows > 0 || rows == -1, "rows < 1 && rows != -1");
+        this.windowSize = rows;
+        return this;
+    }
+
+    /**
+     * Sets whether the temporary files are compressed. They are written in raw deflate format, so that at the default
+     * compression level the compressed rows can be copied into the final file without being compressed again.
+     *
+     * @param compress whether the temporary files are compressed
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions setCompressTempFiles(final boolean compress) {
+        this.compressTempFiles = compress;
+        return this;
+    }
+
+    /**
+     * Sets whether strings are stored in a shared strings table rather than inline. The table is kept in memory until the
+     * workbook is written.
+     *
+     * @param sharedStrings whether to use a shared strings table
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions setSharedStrings(final boolean sharedStrings) {
+        this.sharedStrings = sharedStrings;
+        return this;
+    }
+
+    /**
+     * Sets the directory where the temporary files are created, including the copy of the template workbook which is
+     * written when the workbook is written. By default they are created in the default temporary-file directory used by
+     * POI.
+     *
+     * @param directory the directory where the temporary files are created
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions setTempDirectory(final Path directory) {
+        checkNotNull(directory, "directory == null");
+        this.tempDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Sets when zip64 extensions are used when the workbook is written. {@link Zip64Mode#AsNeeded} only uses them for
+     * sheets larger than 4 GB, {@link Zip64Mode#Always} is required to write such sheets to a non-seekable stream in some
+     * versions of Microsoft Excel, and {@link Zip64Mode#Never} fails rather than produce them.
+     *
+     * @param mode the zip64 mode
+     * @return this {@code StreamingOptions} instance
+     */
+    public StreamingOptions setZip64Mode(final Zip64Mode mode) {
+        checkNotNull(mode, "mode == null");
+        this.zip64Mode = mode;
+        return this;
+    }
+
+    /**
+     * Returns a new {@code StreamingOptions} instance populated with the current settings of {@code this}
+     * {@code StreamingOptions}.
+     *
+     * @return a new {@code StreamingOptions} instance populated with the current settings of {@code this}
+     *         {@code StreamingOptions}
+     */
+    public StreamingOptions newStreamingOptions() {
+        final StreamingOptions options = new StreamingOptions();
+
+        options.windowSize        = windowSize;
+        options.compressTempFiles = compressTempFiles;
+        options.sharedStrings     = sharedStrings;
+        options.tempDirectory     = tempDirectory;
+        options.zip64Mode         = zip64Mode;
+
+        return options;
+    }
+
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    boolean isCompressTempFiles() {
+        return compressTempFiles;
+    }
+
+    boolean isSharedStrings() {
+        return sharedStrings;
+    }
+
+    Path getTempDirectory() {
+        return tempDirectory;
+    }
+
+    Zip64Mode getZip64Mode() {
+        return zip64Mode;
+    }
+
+}
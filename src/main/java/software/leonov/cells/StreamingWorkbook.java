@@ -0,0 +1,315 @@
+package software.leonov.cells;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
+import org.apache.poi.openxml4j.util.ZipEntrySource;
+import org.apache.poi.openxml4j.util.ZipFileZipEntrySource;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFChartSheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * An {@code SXSSFWorkbook} configured by {@link StreamingOptions}, which creates its temporary files in the configured
+ * directory and keeps track of them.
+ * <p>
+ * {@code SXSSFWorkbook} offers no way to choose where its temporary files are created other than the JVM-wide
+ * {@code TempFile} strategy, so the sheet data writers are created here instead, and the copy of the template written by
+ * {@link #write(OutputStream)} is created here as well. The temporary files are deleted when the workbook is
+ * {@link #close() closed} or {@link #dispose() disposed}, or after it has been garbage collected.
+ * <p>
+ * When written with {@link WriteOptions} the final file is assembled by a {@link ZipWriter} instead of POI's zip
+ * writer, which allows the compression level to be chosen and large sheets to be compressed in parallel.
+ * <p>
+ * Compressed temporary files are written in raw deflate format rather than gzip. At the default compression level the
+ * compressed rows are copied into the final file as they are, with {@code FileChannel.transferTo} when writing to a
+ * channel, instead of being decompressed and compressed again.
+ *
+ * @author Zhenya Leonov
+ */
+final class StreamingWorkbook extends SXSSFWorkbook {
+
+    // The super constructor creates the writers of existing sheets before the fields of this class are assigned
+    private static final ThreadLocal<StreamingOptions> CONSTRUCTING = new ThreadLocal<>();
+
+    private final StreamingOptions options;
+    private TempFiles              tempFiles; // assigned on first use, possibly by the super constructor, so no initializer
+    private WriteOptions           writeOptions = null;
+    private WritableByteChannel    writeChannel = null;
+
+    private StreamingWorkbook(final XSSFWorkbook workbook, final StreamingOptions options) {
+        super(workbook, options.getWindowSize(), options.isCompressTempFiles(), options.isSharedStrings());
+        this.options = options;
+        setZip64Mode(options.getZip64Mode());
+    }
+
+    /**
+     * Creates a new {@code SXSSFWorkbook} based on the specified workbook using the specified options.
+     *
+     * @param workbook the template workbook
+     * @param options  the streaming options
+     * @return a new {@code SXSSFWorkbook} based on the specified workbook
+     */
+    static SXSSFWorkbook create(final XSSFWorkbook workbook, final StreamingOptions options) {
+        final StreamingOptions snapshot = options.newStreamingOptions();
+
+        CONSTRUCTING.set(snapshot);
+        try {
+            return new StreamingWorkbook(workbook, snapshot);
+        } finally {
+            CONSTRUCTING.remove();
+        }
+    }
+
+    /**
+     * Returns the current size in bytes of the temporary files backing this workbook.
+     *
+     * @return the current size in bytes of the temporary files backing this workbook
+     */
+    long getTempFileBytes() {
+        return tempFiles == null ? 0 : tempFiles.size();
+    }
+
+    /**
+     * Writes this workbook to the specified stream using the specified options. Does not close the stream.
+     *
+     * @param out     the output stream
+     * @param options the write options
+     * @throws IOException if an I/O error occurs
+     */
+    void write(final OutputStream out, final WriteOptions options) throws IOException {
+        writeOptions = options;
+        try {
+            write(out); // not super.write(out), which spools the template to POI's temporary-file directory
+        } finally {
+            writeOptions = null;
+        }
+    }
+
+    /**
+     * Writes this workbook to the specified channel using the specified options. Compressed temporary files are transferred
+     * to the channel directly. Does not close the channel.
+     *
+     * @param channel the channel
+     * @param options the write options
+     * @throws IOException if an I/O error occurs
+     */
+    void write(final WritableByteChannel channel, final WriteOptions options) throws IOException {
+        writeChannel = channel;
+        try {
+            write(Channels.newOutputStream(channel), options); // POI writes nothing to the stream itself
+        } finally {
+            writeChannel = null;
+        }
+    }
+
+    // The same as SXSSFWorkbook.write(OutputStream), which spools the template to POI's temporary-file directory
+    @Override
+    public void write(final OutputStream out) throws IOException {
+        flushSheets();
+
+        final TempFiles files    = tempFiles(options);
+        final File      template = files.createTempFile("poi-sxssf-template", ".xlsx");
+        try {
+            try (final OutputStream os = new FileOutputStream(template)) {
+                getXSSFWorkbook().write(os);
+            }
+            try (final ZipSecureFile zip = new ZipSecureFile(template); final ZipFileZipEntrySource source = new ZipFileZipEntrySource(zip)) {
+                injectData(source, out);
+            }
+        } finally {
+            files.delete(template);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            dispose();
+        }
+    }
+
+    @Override
+    public boolean dispose() {
+        super.dispose(); // fails for files which were already deleted
+        return tempFiles == null || tempFiles.delete();
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        final StreamingOptions   options = this.options == null ? CONSTRUCTING.get() : this.options;
+        final TempFiles          files   = tempFiles(options);
+        final SharedStringsTable strings = options.isSharedStrings() ? getXSSFWorkbook().getSharedStringSource() : null;
+
+        if (options.isCompressTempFiles())
+            return new SheetDataWriter(strings) {
+                private File         file; // assigned by the super constructor, so no initializers
+                private DeflatedPart part;
+
+                @Override
+                public File createTempFile() throws IOException {
+                    return file = files.createTempFile("poi-sxssf-sheet-xml", ".deflate");
+                }
+
+                @Override
+                protected OutputStream decorateOutputStream(final FileOutputStream fos) {
+                    part = new DeflatedPart(file, fos, Deflater.DEFAULT_COMPRESSION);
+                    return part.getOutputStream();
+                }
+
+                @Override
+                protected InputStream decorateInputStream(final FileInputStream fis) {
+                    return new PartInputStream(fis, part);
+                }
+            };
+        else
+            return new SheetDataWriter(strings) {
+                @Override
+                public File createTempFile() throws IOException {
+                    return files.createTempFile("poi-sxssf-sheet", ".xml");
+                }
+            };
+    }
+
+    // Called by write(OutputStream) with the template workbook written by POI, replaces the sheet data of the template
+    @Override
+    protected void injectData(final ZipEntrySource source, final OutputStream out) throws IOException {
+        if (writeOptions == null) {
+            super.injectData(source, out);
+            return;
+        }
+
+        final XSSFWorkbook            workbook = getXSSFWorkbook();
+        final Map<String, SXSSFSheet> sheets   = new HashMap<>();
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            final XSSFSheet sheet = workbook.getSheetAt(i);
+            if (!(sheet instanceof XSSFChartSheet))
+                sheets.put(sheet.getPackagePart().getPartName().getName().substring(1), getSheetAt(i));
+        }
+
+        try {
+            final ZipWriter zip = writeChannel == null ? new ZipWriter(out, writeOptions) : new ZipWriter(writeChannel, writeOptions);
+            for (final ZipArchiveEntry entry : Collections.list(source.getEntries())) {
+                try (final InputStream in = source.getInputStream(entry)) {
+                    if (in instanceof ZipArchiveThresholdInputStream) // parts of the template may have a high compression ratio
+                        ((ZipArchiveThresholdInputStream) in).setGuardState(false);
+
+                    final SXSSFSheet sheet = sheets.get(entry.getName());
+                    if (sheet == null)
+                        ByteStreams.copy(in, zip.startEntry(entry.getName()));
+                    else
+                        try (final InputStream data = sheet.getWorksheetXMLInputStream()) {
+                            injectSheetData(entry.getName(), in, data, zip);
+                        }
+                }
+            }
+            zip.finish();
+        } finally {
+            source.close();
+        }
+    }
+
+    // Copies the worksheet of the template, replacing its sheetData element with the rows written to the temporary file
+    private void injectSheetData(final String name, final InputStream template, final InputStream data, final ZipWriter zip) throws IOException {
+        final byte[] xml   = ByteStreams.toByteArray(template);
+        final int    start = indexOf(xml, "<sheetData", 0);
+        final int    close = start < 0 ? -1 : indexOf(xml, ">", start);
+
+        int end = -1;
+        if (close > 0 && xml[close - 1] == '/')
+            end = close + 1;
+        else if (close > 0 && (end = indexOf(xml, "</sheetData>", close)) >= 0)
+            end += "</sheetData>".length();
+
+        if (end < 0)
+            throw new IOException("worksheet has no sheetData element");
+
+        final byte[] prefix = concat(Arrays.copyOf(xml, start), "<sheetData>".getBytes(US_ASCII));
+        final byte[] suffix = concat("</sheetData>".getBytes(US_ASCII), Arrays.copyOfRange(xml, end, xml.length));
+
+        // the rows are already compressed at the default level, and the finished temporary file is never written again
+        if (data instanceof PartInputStream && writeOptions.getCompression().getLevel() == Deflater.DEFAULT_COMPRESSION) {
+            zip.writeEntry(name, prefix, ((PartInputStream) data).getPart(), suffix);
+            return;
+        }
+
+        final OutputStream out = zip.startEntry(name);
+        out.write(prefix);
+        ByteStreams.copy(data, out);
+        out.write(suffix);
+    }
+
+    private static byte[] concat(final byte[] a, final byte[] b) {
+        final byte[] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    private static int indexOf(final byte[] xml, final String s, final int from) {
+        outer: for (int i = from; i <= xml.length - s.length(); i++) {
+            for (int j = 0; j < s.length(); j++)
+                if (xml[i + j] != s.charAt(j))
+                    continue outer;
+            return i;
+        }
+        return -1;
+    }
+
+    // Decompresses a temporary file written by a DeflatedPart and gives access to the part
+    private static final class PartInputStream extends InflaterInputStream {
+
+        private final DeflatedPart part;
+
+        PartInputStream(final InputStream in, final DeflatedPart part) {
+            super(in, new Inflater(true), 1 << 16);
+            this.part = part;
+        }
+
+        DeflatedPart getPart() {
+            return part;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end(); // not ended by InflaterInputStream unless it created the inflater
+            }
+        }
+
+    }
+
+    private TempFiles tempFiles(final StreamingOptions options) {
+        if (tempFiles == null)
+            tempFiles = TempFiles.register(this, options.getTempDirectory());
+        return tempFiles;
+    }
+
+}
@@ -0,0 +1,138 @@
+package software.leonov.cells;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.poi.util.TempFile;
+
+import com.google.common.base.FinalizablePhantomReference;
+import com.google.common.base.FinalizableReferenceQueue;
+import com.google.common.collect.Sets;
+
+/**
+ * The temporary files created on behalf of an owner, usually an {@code SXSSFWorkbook}.
+ * <p>
+ * The files are deleted when {@link #delete()} is called or, at the latest, after the owner has been garbage collected.
+ * Files which cannot be deleted, for example because they are still open on Windows, are deleted when the JVM exits.
+ *
+ * @author Zhenya Leonov
+ */
+final class TempFiles {
+
+    private static final FinalizableReferenceQueue QUEUE      = new FinalizableReferenceQueue();
+    private static final Set<Reference<?>>         REFERENCES = Sets.newConcurrentHashSet(); // keeps the references reachable
+    private static final Set<TempFiles>            LIVE       = Sets.newConcurrentHashSet();
+
+    private final Path       directory;
+    private final List<File> files = new CopyOnWriteArrayList<>();
+
+    private TempFiles(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a new {@code TempFiles} whose files are created in the specified directory and deleted after the specified
+     * owner has been garbage collected.
+     *
+     * @param owner     the owner of the files
+     * @param directory the directory where the files are created or {@code null} for POI's default temporary-file
+     *                  directory
+     * @return a new {@code TempFiles} instance
+     */
+    static TempFiles register(final Object owner, final Path directory) {
+        final TempFiles files = new TempFiles(directory);
+        LIVE.add(files);
+
+        // Must not refer to the owner, otherwise it is never collected
+        REFERENCES.add(new FinalizablePhantomReference<Object>(owner, QUEUE) {
+            @Override
+            public void finalizeReferent() {
+                REFERENCES.remove(this);
+                files.delete();
+            }
+        });
+
+        return files;
+    }
+
+    /**
+     * Returns the total size in bytes of the temporary files of all owners which have not been deleted.
+     *
+     * @return the total size in bytes of all temporary files
+     */
+    static long totalSize() {
+        long size = 0;
+        for (final TempFiles files : LIVE)
+            size += files.size();
+        return size;
+    }
+
+    /**
+     * Creates a new empty temporary file.
+     *
+     * @param prefix the prefix of the file name
+     * @param suffix the suffix of the file name
+     * @return the new file
+     * @throws IOException if an I/O error occurs
+     */
+    File createTempFile(final String prefix, final String suffix) throws IOException {
+        final File file = directory == null ? TempFile.createTempFile(prefix, suffix) : Files.createTempFile(directory, prefix, suffix).toFile();
+        files.add(file);
+        LIVE.add(this); // after delete()
+        return file;
+    }
+
+    /**
+     * Returns the current size in bytes of the temporary files.
+     *
+     * @return the current size in bytes of the temporary files
+     */
+    long size() {
+        long size = 0;
+        for (final File file : files)
+            size += file.length(); // 0 if the file has been deleted
+        return size;
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @return {@code true} if all the files were deleted, {@code false} if some files will only be deleted when the JVM
+     *         exits
+     */
+    boolean delete() {
+        boolean deleted = true;
+
+        for (final File file : files)
+            deleted &= delete(file);
+
+        return deleted;
+    }
+
+    /**
+     * Deletes the specified temporary file.
+     *
+     * @param file the temporary file
+     * @return {@code true} if the file was deleted, {@code false} if it will only be deleted when the JVM exits
+     */
+    boolean delete(final File file) {
+        final boolean deleted = file.delete() || !file.exists();
+
+        if (deleted)
+            files.remove(file);
+        else
+            file.deleteOnExit();
+
+        if (files.isEmpty())
+            LIVE.remove(this);
+
+        return deleted;
+    }
+
+}
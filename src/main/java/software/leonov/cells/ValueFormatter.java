@@ -0,0 +1,239 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.emptyToNull;
+import static software.leonov.common.base.Str.trim;
+
+import java.text.DateFormat;
+import java.text.Format;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.ExcelStyleDateFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.util.LocaleUtil;
+
+/**
+ * A thread-safe formatter which returns the value of a cell the exact way it is displayed in Microsoft Excel.
+ * <p>
+ * {@link DataFormatter} compiles every data format it encounters into a {@link java.text.Format} and caches it by its
+ * format string. Neither the cache nor the compiled formats are thread-safe, so a single {@code DataFormatter} cannot be
+ * shared between threads without external synchronization. Instead, a {@code ValueFormatter} keeps a lock-free cache of
+ * compiled formats per locale, keyed by data-format index and format string, which is shared by all threads. Each entry
+ * holds whether the format is a date format and a pool of compiled {@code java.text.Format}s. A thread takes a format
+ * from the pool, formats the value, and returns it, so a format is only ever used by one thread at a time and is
+ * compiled only when every compiled instance is in use. The cache does not grow with the number of threads which use
+ * it, and nothing is retained per thread, which suits pools of short-lived or virtual threads.
+ * <p>
+ * Conditional and multi-section formats, whose rendering depends on the value, are formatted by {@code DataFormatter}s
+ * taken from a shared pool in the same way. String, boolean, error and formula cells need no format at all.
+ * <p>
+ * Instances are cached per locale and can be shared freely.
+ *
+ * @author Zhenya Leonov
+ */
+public final class ValueFormatter {
+
+    private static final ConcurrentMap<Locale, ValueFormatter> INSTANCES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Locale, Formats>        FORMATS   = new ConcurrentHashMap<>();
+
+    // Follows the locale returned by LocaleUtil.getUserLocale(), which is how the no-arg DataFormatter behaves
+    private static final ValueFormatter DEFAULT = new ValueFormatter(null);
+
+    // The formats DataFormatter hands over to CellFormat, see DataFormatter.getFormat(double, int, String, boolean)
+    private static final Pattern RANGE_CONDITIONAL = Pattern.compile(".*\\[\\s*(>|>=|<|<=|=)\\s*[0-9]*\\.*[0-9].*");
+
+    private final Locale  locale;
+    private final Formats formats; // null if the locale follows the user locale
+
+    private ValueFormatter(final Locale locale) {
+        this.locale  = locale;
+        this.formats = locale == null ? null : formatsOf(locale);
+    }
+
+    /**
+     * Returns the {@code ValueFormatter} for the {@link LocaleUtil#getUserLocale() current user locale}.
+     *
+     * @return the {@code ValueFormatter} for the current user locale
+     */
+    public static ValueFormatter getInstance() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the {@code ValueFormatter} for the specified locale.
+     *
+     * @param locale the locale
+     * @return the {@code ValueFormatter} for the specified locale
+     */
+    public static ValueFormatter getInstance(final Locale locale) {
+        checkNotNull(locale, "locale == null");
+        return INSTANCES.computeIfAbsent(locale, ValueFormatter::new);
+    }
+
+    /**
+     * Returns the locale of this formatter.
+     *
+     * @return the locale of this formatter
+     */
+    public Locale getLocale() {
+        return locale == null ? LocaleUtil.getUserLocale() : locale;
+    }
+
+    /**
+     * Returns the formatted value of the specified cell.
+     * <p>
+     * This method is {@code null} safe. If the specified cell is {@code null} or blank this method will return a
+     * {@code null} value. Leading and trailing whitespace is trimmed.
+     * <p>
+     * See {@link Cells#formatValue(Cell)} for further details.
+     *
+     * @param cell the specified cell
+     * @return the formatted value of the specified cell
+     */
+    public String format(final Cell cell) {
+        if (cell == null)
+            return null;
+
+        // The same as DataFormatter.formatCellValue(Cell) without a formula evaluator
+        switch (cell.getCellType()) {
+        case NUMERIC:
+            return emptyToNull(trim((formats == null ? formatsOf(getLocale()) : formats).format(cell)));
+        case STRING:
+            return emptyToNull(trim(cell.getRichStringCellValue().getString()));
+        case BOOLEAN:
+            return cell.getBooleanCellValue() ? "TRUE" : "FALSE";
+        case ERROR:
+            return FormulaError.forInt(cell.getErrorCellValue()).getString();
+        case FORMULA:
+            return emptyToNull(trim(cell.getCellFormula()));
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ValueFormatter[" + getLocale() + "]";
+    }
+
+    private static Formats formatsOf(final Locale locale) {
+        return FORMATS.computeIfAbsent(locale, Formats::new);
+    }
+
+    // The compiled formats of a locale
+    private static final class Formats {
+
+        private final Locale                                  locale;
+        private final ConcurrentMap<FormatKey, CompiledFormat> formats    = new ConcurrentHashMap<>();
+        private final Queue<DataFormatter>                    formatters = new ConcurrentLinkedQueue<>(); // idle
+
+        Formats(final Locale locale) {
+            this.locale = locale;
+        }
+
+        String format(final Cell cell) {
+            final CellStyle style   = cell.getCellStyle();
+            final String    pattern = style == null ? null : style.getDataFormatString();
+
+            if (pattern == null)
+                return formatWithDataFormatter(cell);
+
+            final int index = style.getDataFormat() & 0xFFFF;
+            return formats.computeIfAbsent(new FormatKey(index, pattern), key -> new CompiledFormat(index, pattern)).format(cell, this);
+        }
+
+        String formatWithDataFormatter(final Cell cell) {
+            DataFormatter formatter = formatters.poll();
+            if (formatter == null)
+                formatter = new DataFormatter(locale);
+            try {
+                return formatter.formatCellValue(cell);
+            } finally {
+                formatters.offer(formatter);
+            }
+        }
+
+    }
+
+    // A data format and a pool of its compiled instances
+    private static final class CompiledFormat {
+
+        private final boolean       date;
+        private final boolean       conditional;
+        private final Queue<Format> formats = new ConcurrentLinkedQueue<>(); // idle
+        private volatile boolean    compilable = true;
+
+        CompiledFormat(final int index, final String pattern) {
+            this.date        = DateUtil.isADateFormat(index, pattern);
+            this.conditional = pattern.contains(";") && (pattern.indexOf(';') != pattern.lastIndexOf(';') || RANGE_CONDITIONAL.matcher(pattern).matches());
+        }
+
+        String format(final Cell cell, final Formats owner) {
+            final double value = cell.getNumericCellValue();
+
+            if (conditional || !compilable || date && !DateUtil.isValidExcelDate(value))
+                return owner.formatWithDataFormatter(cell);
+
+            Format format = formats.poll();
+            if (format == null) {
+                // A new DataFormatter, because formats such as General are shared by the DataFormatter which creates them
+                format = new DataFormatter(owner.locale).createFormat(cell);
+                if (format == null) {
+                    compilable = false;
+                    return owner.formatWithDataFormatter(cell);
+                }
+            }
+
+            try {
+                if (date) {
+                    if (format instanceof ExcelStyleDateFormatter)
+                        ((ExcelStyleDateFormatter) format).setDateToBeFormatted(value);
+                    if (format instanceof DateFormat)
+                        ((DateFormat) format).setTimeZone(LocaleUtil.getUserTimeZone());
+                    return format.format(cell.getDateCellValue());
+                }
+
+                final String formatted = format.format(value);
+                return formatted.indexOf('E') < 0 ? formatted : formatted.replaceFirst("E(\\d)", "E+$1"); // Excel's E-notation
+            } finally {
+                formats.offer(format);
+            }
+        }
+
+    }
+
+    private static final class FormatKey {
+
+        private final int    index;
+        private final String pattern;
+
+        FormatKey(final int index, final String pattern) {
+            this.index   = index;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof FormatKey))
+                return false;
+            final FormatKey other = (FormatKey) obj;
+            return index == other.index && pattern.equals(other.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index + pattern.hashCode();
+        }
+
+    }
+
+}
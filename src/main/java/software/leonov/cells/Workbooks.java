@@ -2,18 +2,44 @@ package software.leonov.cells;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
@@ -22,6 +48,7 @@ import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
 
 /**
  * Static methods for working with {@link Workbook}s.
@@ -123,22 +150,54 @@ final public class Workbooks {
 
     }
 
-//    /**
-//     * Dispose of temporary files backing an {@link SXSSFWorkbook} on disk. Calling this method will render the workbook
-//     * unusable.
-//     * <p>
-//     * This method is a no-op for other {@link Workbook} implementations.
-//     * 
-//     * @param workbook the specified workbook
-//     * @return {@code true} if the specified workbook is an {@code SXSSFWorkbook} and all temporary files were successfully
-//     *         deleted
-//     */
-//    public static boolean dispose(final Workbook workbook) {
-//        checkNotNull(workbook, "workbook == null");
-//        if (workbook instanceof SXSSFWorkbook)
-//            return ((SXSSFWorkbook) workbook).dispose();
-//        return false;
-//    }
+    /**
+     * Dispose of temporary files backing an {@link SXSSFWorkbook} on disk. Calling this method will render the workbook
+     * unusable.
+     * <p>
+     * Streaming workbooks created by this class are disposed automatically when they are {@link Workbook#close() closed},
+     * and after they have been garbage collected if they are abandoned without being closed.
+     * <p>
+     * This method is a no-op for other {@link Workbook} implementations.
+     * 
+     * @param workbook the specified workbook
+     * @return {@code true} if the specified workbook is an {@code SXSSFWorkbook} and all temporary files were successfully
+     *         deleted
+     */
+    public static boolean dispose(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+        if (workbook instanceof SXSSFWorkbook)
+            return ((SXSSFWorkbook) workbook).dispose();
+        return false;
+    }
+
+    /**
+     * Returns the current size in bytes of the temporary files backing the specified workbook.
+     * <p>
+     * Only {@link Format#STREAMING_OFFICE_OPEN_XML streaming} workbooks created by this class are backed by temporary
+     * files which can be measured. This method returns 0 for all other workbooks, including {@code SXSSFWorkbook}s created
+     * directly.
+     * 
+     * @param workbook the specified workbook
+     * @return the current size in bytes of the temporary files backing the specified workbook
+     */
+    public static long getTempFileBytes(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+        return workbook instanceof StreamingWorkbook ? ((StreamingWorkbook) workbook).getTempFileBytes() : 0;
+    }
+
+    /**
+     * Returns the current size in bytes of the temporary files backing all {@link Format#STREAMING_OFFICE_OPEN_XML
+     * streaming} workbooks created by this class which have not been disposed, including the temporary files of workbooks
+     * which are being written with {@link WriteOptions}.
+     * <p>
+     * Services which write many large workbooks concurrently can use this method to apply back-pressure before the disk
+     * fills up.
+     * 
+     * @return the current size in bytes of all temporary files backing streaming workbooks
+     */
+    public static long getTempFileBytes() {
+        return TempFiles.totalSize();
+    }
 
     /**
      * Convenience method to get the active sheet from the specified workbook.
@@ -202,6 +261,23 @@ final public class Workbooks {
         return sheet;
     }
 
+    /**
+     * Writes the rows of the specified {@code ResultSet} to the specified sheet of the workbook, which is created if it
+     * does not exist, continuing on new sheets when the maximum number of rows is reached.
+     * <p>
+     * See {@link Sheets#writeResultSet(Sheet, ResultSet)} for further details.
+     * 
+     * @param workbook the workbook
+     * @param rs       the result set to export
+     * @param name     the name of the sheet
+     * @return the sheets which were written to
+     * @throws SQLException if a database access error occurs
+     */
+    public static List<Sheet> writeResultSet(final Workbook workbook, final ResultSet rs, final String name) throws SQLException {
+        checkNotNull(rs, "rs == null");
+        return Sheets.writeResultSet(getOrCreateSheet(workbook, name), rs);
+    }
+
     /**
      * Returns the specified sheet from the workbook or {@code null} if the number of sheets in the workbook is less than
      * {@code index}.
@@ -239,6 +315,27 @@ final public class Workbooks {
         return workbook.getNumberOfSheets() == 0 || index < 0 ? null : workbook.getSheetAt(index);
     }
 
+    /**
+     * Returns {@code true} if the specified workbook uses the 1904 date system, {@code false} if it uses the 1900 date
+     * system.
+     * 
+     * @param workbook the specified workbook
+     * @return {@code true} if the specified workbook uses the 1904 date system
+     * @see SerialDates
+     */
+    public static boolean isDate1904(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+
+        if (workbook instanceof HSSFWorkbook)
+            return ((HSSFWorkbook) workbook).getInternalWorkbook().isUsing1904DateWindowing();
+        else if (workbook instanceof XSSFWorkbook)
+            return ((XSSFWorkbook) workbook).isDate1904();
+        else if (workbook instanceof SXSSFWorkbook)
+            return ((SXSSFWorkbook) workbook).getXSSFWorkbook().isDate1904();
+        else
+            throw new IllegalArgumentException("unsupported workbook: " + workbook.getClass().getName());
+    }
+
     /**
      * Creates a new {@code Workbook} with an empty sheet.
      * <p>
@@ -247,7 +344,7 @@ final public class Workbooks {
      * <p>
      * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
      * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
-     * SXSSFWorkbook(XSSFWorkbook)} for more information. Consider creating an {@link SXSSFWorkbook} manually if explicit
+     * SXSSFWorkbook(XSSFWorkbook)} for more information. Use {@link #newWorkbook(StreamingOptions, String...)} if explicit
      * control over its behavior is desired.
      * 
      * @param format specifies which workbook format to use
@@ -266,7 +363,7 @@ final public class Workbooks {
      * <p>
      * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
      * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
-     * SXSSFWorkbook(XSSFWorkbook)} for more information. Consider creating an {@link SXSSFWorkbook} manually if explicit
+     * SXSSFWorkbook(XSSFWorkbook)} for more information. Use {@link #newWorkbook(StreamingOptions, String...)} if explicit
      * control over its behavior is desired.
      * 
      * @param format  specifies which workbook format to use
@@ -290,7 +387,7 @@ final public class Workbooks {
      * <p>
      * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
      * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
-     * SXSSFWorkbook(XSSFWorkbook)} for more information. Consider creating an {@link SXSSFWorkbook} manually if explicit
+     * SXSSFWorkbook(XSSFWorkbook)} for more information. Use {@link #newWorkbook(StreamingOptions, String...)} if explicit
      * control over its behavior is desired.
      * 
      * @param format specifies which workbook format to use
@@ -301,17 +398,25 @@ final public class Workbooks {
         checkNotNull(format, "format == null");
         checkNotNull(sheets, "sheets == null");
 
-        final Workbook workbook = format == Format.BINARY_2003 ? new HSSFWorkbook() : format == Format.OFFICE_OPEN_XML ? new XSSFWorkbook() : new SXSSFWorkbook();
+        final Workbook workbook = format == Format.BINARY_2003 ? new HSSFWorkbook() : format == Format.OFFICE_OPEN_XML ? new XSSFWorkbook() : newStreamingWorkbook(new XSSFWorkbook());
 
-        for (final String name : sheets) {
-            WorkbookUtil.validateSheetName(name);
-            workbook.createSheet(name);
-        }
+        return createSheets(workbook, sheets);
+    }
 
-        if (sheets.length > 0)
-            workbook.setActiveSheet(0);
+    /**
+     * Creates a new {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} {@code Workbook} using the specified
+     * options and with the specified named sheets.
+     * 
+     * @param options the streaming options
+     * @param sheets  any additional sheets
+     * @return a new {@code Workbook} containing the specified named sheets
+     * @see StreamingOptions
+     */
+    public static Workbook newWorkbook(final StreamingOptions options, final String... sheets) {
+        checkNotNull(options, "options == null");
+        checkNotNull(sheets, "sheets == null");
 
-        return workbook;
+        return createSheets(StreamingWorkbook.create(new XSSFWorkbook(), options), sheets);
     }
 
     /**
@@ -338,7 +443,7 @@ final public class Workbooks {
      * <p>
      * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
      * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
-     * SXSSFWorkbook(XSSFWorkbook)} for more information. Consider creating an {@link SXSSFWorkbook} manually if explicit
+     * SXSSFWorkbook(XSSFWorkbook)} for more information. Use {@link #open(InputStream, StreamingOptions)} if explicit
      * control over its behavior is desired.
      * 
      * @param in the specified input stream
@@ -354,7 +459,26 @@ final public class Workbooks {
         checkNotNull(in, "in == null");
         checkNotNull(format, "format == null");
 
-        return format == Format.BINARY_2003 ? new HSSFWorkbook(in) : format == Format.OFFICE_OPEN_XML ? new XSSFWorkbook(in) : new SXSSFWorkbook(new XSSFWorkbook(in));
+        return format == Format.BINARY_2003 ? new HSSFWorkbook(in) : format == Format.OFFICE_OPEN_XML ? new XSSFWorkbook(in) : newStreamingWorkbook(new XSSFWorkbook(in));
+    }
+
+    /**
+     * Opens a {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbook from the specified input stream
+     * using the specified options. Does not close the stream.
+     * <p>
+     * The existing rows of the workbook are kept in memory, only new rows are subject to the window size.
+     * 
+     * @param in      the specified input stream
+     * @param options the streaming options
+     * @return a new workbook loaded from the specified input stream
+     * @throws IOException if an I/O error occurs
+     * @see StreamingOptions
+     */
+    public static Workbook open(final InputStream in, final StreamingOptions options) throws IOException {
+        checkNotNull(in, "in == null");
+        checkNotNull(options, "options == null");
+
+        return StreamingWorkbook.create(new XSSFWorkbook(in), options);
     }
 
     /**
@@ -362,6 +486,9 @@ final public class Workbooks {
      * <p>
      * This method will automatically determine the format as either {@link Format#BINARY_2003} or
      * {@link Format#OFFICE_OPEN_XML} based on the file content.
+     * <p>
+     * The entire file is buffered into memory and the returned workbook is detached from the file. Consider
+     * {@link #open(Path, boolean)} to access large files in place.
      * 
      * @param path the path to load
      * @return a new workbook object loaded from the specified path
@@ -384,8 +511,11 @@ final public class Workbooks {
      * <p>
      * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
      * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
-     * SXSSFWorkbook(XSSFWorkbook)} for more information. Consider creating an {@link SXSSFWorkbook} manually if explicit
+     * SXSSFWorkbook(XSSFWorkbook)} for more information. Use {@link #open(InputStream, StreamingOptions)} if explicit
      * control over its behavior is desired.
+     * <p>
+     * The entire file is buffered into memory and the returned workbook is detached from the file. Consider
+     * {@link #open(Path, Format, boolean)} to access large files in place.
      * 
      * @param path   the path to load
      * @param format specifies which workbook format to use
@@ -405,6 +535,338 @@ final public class Workbooks {
         }
     }
 
+    /**
+     * Opens a workbook directly from the specified file without buffering its contents into memory.
+     * <p>
+     * This method will automatically determine the format as either {@link Format#BINARY_2003} or
+     * {@link Format#OFFICE_OPEN_XML} based on the file content. See {@link #open(Path, Format, boolean)} for further
+     * details.
+     * 
+     * @param path     the path to load
+     * @param readOnly whether or not the file must never be modified
+     * @return a new workbook backed by the specified file
+     * @throws IOException if an I/O error occurs
+     * @see WorkbookFactory#create(File, String, boolean)
+     */
+    public static Workbook open(final Path path, final boolean readOnly) throws IOException {
+        checkNotNull(path, "path == null");
+        return WorkbookFactory.create(path.toFile(), null, readOnly);
+    }
+
+    /**
+     * Opens a workbook directly from the specified file without buffering its contents into memory.
+     * <p>
+     * {@link Format#BINARY_2003 xls} files are accessed in place through a {@link POIFSFileSystem#POIFSFileSystem(File,
+     * boolean) file-backed POIFSFileSystem}. {@link Format#OFFICE_OPEN_XML xlsx} files are accessed in place through
+     * {@link OPCPackage#open(File, PackageAccess)}. On large files this reduces peak memory use by roughly the size of the
+     * file. The file remains open until the workbook is {@link Workbook#close() closed}.
+     * <p>
+     * <b>Note:</b> If {@code readOnly} is {@code true} the file is never modified. However an <i>xlsx</i> workbook opened
+     * in read-only mode cannot be written at all, not even to a different location. If {@code readOnly} is {@code false}
+     * any changes made to an <i>xlsx</i> workbook are written back to the file when the workbook is closed. Use one of the
+     * {@link #open(Path, Format) buffered} methods to modify a workbook and save it elsewhere.
+     * <p>
+     * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming Office Open XML} workbooks will be created using the default
+     * settings. See {@link SXSSFWorkbook} and {@link SXSSFWorkbook#SXSSFWorkbook(XSSFWorkbook) new
+     * SXSSFWorkbook(XSSFWorkbook)} for more information.
+     * 
+     * @param path     the path to load
+     * @param format   specifies which workbook format to use
+     * @param readOnly whether or not the file must never be modified
+     * @return a new workbook backed by the specified file
+     * @throws IOException if an I/O error occurs
+     * @see HSSFWorkbook
+     * @see XSSFWorkbook
+     * @see SXSSFWorkbook
+     */
+    public static Workbook open(final Path path, final Format format, final boolean readOnly) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(format, "format == null");
+
+        final File file = path.toFile();
+
+        if (format == Format.BINARY_2003) {
+            final POIFSFileSystem fs = new POIFSFileSystem(file, readOnly);
+            try {
+                return new HSSFWorkbook(fs);
+            } catch (final IOException | RuntimeException e) {
+                fs.close();
+                throw e;
+            }
+        }
+
+        final OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, readOnly ? PackageAccess.READ : PackageAccess.READ_WRITE);
+        } catch (final InvalidFormatException e) {
+            throw new IOException(e);
+        }
+
+        try {
+            final XSSFWorkbook workbook = new XSSFWorkbook(pkg);
+            return format == Format.OFFICE_OPEN_XML ? workbook : newStreamingWorkbook(workbook);
+        } catch (final IOException | RuntimeException e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronously loads a workbook from the specified file using the specified executor.
+     * <p>
+     * Equivalent to {@link #open(Path)}, see {@link #openAsync(Path, Format, boolean, Executor)} for how the returned
+     * future behaves.
+     * 
+     * @param path     the path to load
+     * @param executor the executor which loads the workbook
+     * @return a future which completes with the workbook
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public static CompletableFuture<Workbook> openAsync(final Path path, final Executor executor) {
+        checkNotNull(path, "path == null");
+        checkNotNull(executor, "executor == null");
+        return AsyncTask.submit(() -> open(path), Workbooks::discard, executor);
+    }
+
+    /**
+     * Asynchronously loads a workbook from the specified file using the specified executor.
+     * <p>
+     * Equivalent to {@link #open(Path, Format, boolean)}. The workbook is loaded by a thread of the executor, which can be
+     * a bounded pool reserved for spreadsheet work or, on Java 21 and later, a virtual thread per task executor. I/O
+     * errors complete the future exceptionally with the {@code IOException}.
+     * <p>
+     * Cancelling the future before the workbook starts loading prevents it from being loaded. Cancelling it while the
+     * workbook is loading interrupts the loading thread, and if the workbook is loaded anyway it is discarded without
+     * writing anything back to the file.
+     * 
+     * @param path     the path to load
+     * @param format   specifies which workbook format to use
+     * @param readOnly whether or not the file must never be modified
+     * @param executor the executor which loads the workbook
+     * @return a future which completes with the workbook
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public static CompletableFuture<Workbook> openAsync(final Path path, final Format format, final boolean readOnly, final Executor executor) {
+        checkNotNull(path, "path == null");
+        checkNotNull(format, "format == null");
+        checkNotNull(executor, "executor == null");
+        return AsyncTask.submit(() -> open(path, format, readOnly), Workbooks::discard, executor);
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the rows in the first sheet of the specified file.
+     * <p>
+     * Unlike the {@link #open(Path) open} methods this method does not load the workbook into memory. Rows are parsed from
+     * the file one at a time as the stream is consumed, so memory use remains flat regardless of the size of the sheet.
+     * Only the formatted values of non-blank cells are retained. Rows which do not contain any non-blank cells are skipped.
+     * <p>
+     * This method will automatically determine the format as either {@link Format#BINARY_2003} or
+     * {@link Format#OFFICE_OPEN_XML} based on the file content. Both formats produce identical {@link RowRecord}s. <i>xls</i>
+     * files are read with the {@link org.apache.poi.hssf.eventusermodel.HSSFListener HSSF event model}, <i>xlsx</i> files
+     * are read with {@link org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler XSSFSheetXMLHandler}.
+     * <p>
+     * The returned stream holds the file open and must be {@link Stream#close() closed}, preferably with a
+     * try-with-resources statement. The file is never modified.
+     *
+     * @param path the path to read
+     * @return a lazily populated {@code Stream} of the rows in the first sheet of the specified file
+     * @throws IOException if an I/O error occurs
+     * @see RowRecord
+     * @see RowRecords
+     */
+    public static Stream<RowRecord> stream(final Path path) throws IOException {
+        return stream(path, 0);
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the rows in the specified sheet of the given file.
+     * <p>
+     * See {@link #stream(Path)} for further details.
+     *
+     * @param path  the path to read
+     * @param index the 0-based index of the sheet
+     * @return a lazily populated {@code Stream} of the rows in the specified sheet of the given file
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the sheet does not exist
+     */
+    public static Stream<RowRecord> stream(final Path path, final int index) throws IOException {
+        checkNotNull(path, "path == null");
+        return stream(path, new ReadOptions().setSheet(index));
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the rows in the specified sheet of the given file.
+     * <p>
+     * See {@link #stream(Path)} for further details.
+     *
+     * @param path the path to read
+     * @param name the name of the sheet
+     * @return a lazily populated {@code Stream} of the rows in the specified sheet of the given file
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the sheet does not exist
+     */
+    public static Stream<RowRecord> stream(final Path path, final String name) throws IOException {
+        checkNotNull(path, "path == null");
+        return stream(path, new ReadOptions().setSheet(name));
+    }
+
+    /**
+     * Returns a lazily populated {@code Stream} of the rows in the given file, read according to the specified options.
+     * <p>
+     * See {@link #stream(Path)} for further details.
+     *
+     * @param path    the path to read
+     * @param options the read options
+     * @return a lazily populated {@code Stream} of the rows in the given file, read according to the specified options
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the sheet does not exist
+     * @see ReadOptions
+     */
+    public static Stream<RowRecord> stream(final Path path, final ReadOptions options) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+        return newRowRecordIterator(path, options).stream();
+    }
+
+    /**
+     * Returns a {@code ColumnBatchReader} which reads the first sheet of the specified file into the given batch.
+     * <p>
+     * See {@link #readColumns(Path, ReadOptions, ColumnBatch)} for further details.
+     *
+     * @param path  the path to read
+     * @param batch the batch to fill
+     * @return a {@code ColumnBatchReader} which reads the first sheet of the specified file into the given batch
+     * @throws IOException if an I/O error occurs
+     */
+    public static ColumnBatchReader readColumns(final Path path, final ColumnBatch batch) throws IOException {
+        return readColumns(path, new ReadOptions(), batch);
+    }
+
+    /**
+     * Returns a {@code ColumnBatchReader} which reads the specified file into the given batch, according to the specified
+     * options.
+     * <p>
+     * Like the {@link #stream(Path) stream} methods this method does not load the workbook into memory. Only the columns of
+     * the batch are read, the {@link ReadOptions#setColumns(int...) projected columns} are ignored. Numeric cells are copied
+     * into the batch directly from their stored value without being formatted, text cells are parsed. Rows which do not
+     * contain any non-blank cells in the batch's columns are skipped.
+     * <p>
+     * {@link ReadOptions#setStopCondition(int, java.util.function.Predicate) Stop conditions} are evaluated against
+     * formatted values and are not supported by this method, use {@link ReadOptions#setRows(int, int)} instead.
+     * <p>
+     * The returned reader holds the file open and must be {@link ColumnBatchReader#close() closed}, preferably with a
+     * try-with-resources statement. The file is never modified.
+     *
+     * @param path    the path to read
+     * @param options the read options
+     * @param batch   the batch to fill
+     * @return a {@code ColumnBatchReader} which reads the specified file into the given batch
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the sheet does not exist, the batch has no columns, or a stop condition is set
+     * @see ColumnBatch
+     */
+    public static ColumnBatchReader readColumns(final Path path, final ReadOptions options, final ColumnBatch batch) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+        checkNotNull(batch, "batch == null");
+        checkArgument(!options.hasStopCondition(), "stop conditions are not supported");
+
+        final FileMagic magic = getFileMagic(path);
+
+        if (magic == FileMagic.OLE2)
+            return new HSSFColumnBatchReader(path.toFile(), options, batch);
+        else if (magic == FileMagic.OOXML)
+            return new XSSFColumnBatchReader(path.toFile(), options, batch);
+        else
+            throw new IOException("unsupported file format: " + magic);
+    }
+
+    private static RowRecordIterator newRowRecordIterator(final Path path, final ReadOptions options) throws IOException {
+        final FileMagic magic = getFileMagic(path);
+
+        if (magic == FileMagic.OLE2)
+            return new HSSFRowRecordIterator(path.toFile(), options);
+        else if (magic == FileMagic.OOXML)
+            return new XSSFRowRecordIterator(path.toFile(), options);
+        else
+            throw new IOException("unsupported file format: " + magic);
+    }
+
+    private static Workbook createSheets(final Workbook workbook, final String... sheets) {
+        for (final String name : sheets) {
+            WorkbookUtil.validateSheetName(name);
+            workbook.createSheet(name);
+        }
+
+        if (sheets.length > 0)
+            workbook.setActiveSheet(0);
+
+        return workbook;
+    }
+
+    // Rewrites the zip file written by POI with the specified zip writer, spooling it to a temporary file rather than memory
+    private static void recompress(final Workbook workbook, final ZipWriter zip) throws IOException {
+        final TempFiles files = TempFiles.register(workbook, null); // counted by getTempFileBytes()
+        final Path      spool = files.createTempFile("cells-recompress", ".xlsx").toPath();
+        try {
+            try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(spool), 1 << 16)) {
+                workbook.write(out);
+            }
+
+            try (final ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(spool), 1 << 16))) {
+                for (ZipEntry entry; (entry = in.getNextEntry()) != null;)
+                    ByteStreams.copy(in, zip.startEntry(entry.getName()));
+            }
+            zip.finish();
+        } finally {
+            files.delete();
+        }
+    }
+
+    // Unlike Files.createTempFile, which makes the file accessible to its owner only, applies the default permissions
+    private static Path createTempFile(final Path directory, final String prefix) throws IOException {
+        while (true)
+            try {
+                return Files.createFile(directory.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp"));
+            } catch (final FileAlreadyExistsException e) {
+                // try another name
+            }
+    }
+
+    // Forces the entries of the directory to the storage device, not supported on every platform
+    private static void syncDirectory(final Path directory) {
+        try (final FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        } catch (final IOException e) {
+            // directories cannot be opened or synced on Windows, where the move is durable once it returns
+        }
+    }
+
+    // Releases a workbook nobody is waiting for, without writing changes back to the file it was opened from
+    private static void discard(final Workbook workbook) {
+        try {
+            if (workbook instanceof SXSSFWorkbook) {
+                dispose(workbook);
+                ((SXSSFWorkbook) workbook).getXSSFWorkbook().getPackage().revert();
+            } else if (workbook instanceof XSSFWorkbook)
+                ((XSSFWorkbook) workbook).getPackage().revert();
+            else
+                workbook.close();
+        } catch (final IOException | RuntimeException e) {
+            // nothing else can be done
+        }
+    }
+
+    private static SXSSFWorkbook newStreamingWorkbook(final XSSFWorkbook workbook) {
+        return StreamingWorkbook.create(workbook, new StreamingOptions());
+    }
+
+    private static FileMagic getFileMagic(final Path path) throws IOException {
+        try (final InputStream in = FileMagic.prepareToCheckMagic(Files.newInputStream(path))) {
+            return FileMagic.valueOf(in);
+        }
+    }
+
 //    /**
 //     * Writes the given workbook to a file in the default temporary-file directory.
 //     * 
@@ -479,6 +941,160 @@ final public class Workbooks {
         return path;
     }
 
+    /**
+     * Writes the given workbook to the specified path using the specified options and {@link Workbook#close() closes} the
+     * workbook.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @param options  the write options
+     * @throws IOException if an I/O error occurs
+     * @return the specified file
+     * @see #save(Workbook, Path, boolean, WriteOptions)
+     */
+    public static Path save(final Workbook workbook, final Path path, final WriteOptions options) throws IOException {
+        return save(workbook, path, true, options);
+    }
+
+    /**
+     * Writes the given workbook to the specified path using the specified options.
+     * <p>
+     * The file is written through a {@link FileChannel}, see {@link #write(Workbook, WritableByteChannel, boolean,
+     * WriteOptions)}.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @param options  the write options
+     * @throws IOException if an I/O error occurs
+     * @return the specified file
+     */
+    public static Path save(final Workbook workbook, final Path path, final boolean close, final WriteOptions options) throws IOException {
+        checkNotNull(workbook, "workbook == null");
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+        try (final FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            write(workbook, channel, close, options);
+            if (options.isSync())
+                channel.force(true);
+        }
+        return path;
+    }
+
+    /**
+     * Writes the given workbook to a temporary file next to the specified path and then atomically moves it to the
+     * specified path, {@link Workbook#close() closing} the workbook.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @throws IOException if an I/O error occurs
+     * @return the outcome of the save
+     * @see #saveAtomically(Workbook, Path, boolean, WriteOptions)
+     */
+    public static SaveResult saveAtomically(final Workbook workbook, final Path path) throws IOException {
+        return saveAtomically(workbook, path, true, new WriteOptions());
+    }
+
+    /**
+     * Writes the given workbook to a temporary file next to the specified path and then atomically moves it to the
+     * specified path, replacing an existing file.
+     * <p>
+     * Readers of the specified path see either the previous file or the complete new file, never a partially written one.
+     * If writing fails the temporary file is deleted and an existing file is left untouched. If the options
+     * {@link WriteOptions#setSync(boolean) sync} the temporary file is forced to the storage device before it is moved,
+     * and the directory afterwards. The workbook is written to the file as described in
+     * {@link #write(Workbook, WritableByteChannel, boolean, WriteOptions)}, without an additional copy in memory.
+     * <p>
+     * The new file is created with the default permissions of a new file in the directory, the same as a file written by
+     * {@link #save(Workbook, Path, boolean, WriteOptions)} for the first time. The permissions of an existing file are not
+     * kept.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @param options  the write options
+     * @throws IOException                                   if an I/O error occurs
+     * @throws java.nio.file.AtomicMoveNotSupportedException if the file system cannot move the file atomically
+     * @return the outcome of the save
+     */
+    public static SaveResult saveAtomically(final Workbook workbook, final Path path, final boolean close, final WriteOptions options) throws IOException {
+        checkNotNull(workbook, "workbook == null");
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+
+        final long start     = System.nanoTime();
+        final Path target    = path.toAbsolutePath();
+        final Path directory = target.getParent();
+        final Path temp      = createTempFile(directory, "." + target.getFileName());
+
+        try {
+            final long bytes;
+            try (final FileChannel channel = FileChannel.open(temp, TRUNCATE_EXISTING, WRITE)) {
+                write(workbook, channel, close, options);
+                if (options.isSync())
+                    channel.force(true);
+                bytes = channel.size();
+            }
+
+            Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+
+            if (options.isSync())
+                syncDirectory(directory);
+
+            return new SaveResult(path, bytes, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            Files.deleteIfExists(temp); // only exists if the move did not happen
+        }
+    }
+
+    /**
+     * Asynchronously writes the given workbook to the specified path using the specified executor and
+     * {@link Workbook#close() closes} the workbook.
+     * <p>
+     * Equivalent to {@link #saveAtomically(Workbook, Path)}, see
+     * {@link #saveAsync(Workbook, Path, boolean, WriteOptions, Executor)} for how the returned future behaves.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @param executor the executor which writes the workbook
+     * @return a future which completes with the outcome of the save
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public static CompletableFuture<SaveResult> saveAsync(final Workbook workbook, final Path path, final Executor executor) {
+        return saveAsync(workbook, path, true, new WriteOptions(), executor);
+    }
+
+    /**
+     * Asynchronously writes the given workbook to the specified path using the specified options and executor.
+     * <p>
+     * Equivalent to {@link #saveAtomically(Workbook, Path, boolean, WriteOptions)} with a copy of the options taken when
+     * this method is called. The workbook must not be modified until the future completes. I/O errors complete the future
+     * exceptionally with the {@code IOException}.
+     * <p>
+     * Because the file is moved into place only after it has been written completely, cancelling the future never leaves
+     * a partial file at the specified path. Cancelling the future before the workbook starts being written prevents it
+     * from being written, in which case it is not closed either. Cancelling it while the workbook is being written
+     * interrupts the writing thread, which aborts the write and deletes the temporary file.
+     * 
+     * @param workbook the given workbook
+     * @param path     the specified path
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @param options  the write options
+     * @param executor the executor which writes the workbook
+     * @return a future which completes with the outcome of the save
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept the task
+     */
+    public static CompletableFuture<SaveResult> saveAsync(final Workbook workbook, final Path path, final boolean close, final WriteOptions options, final Executor executor) {
+        checkNotNull(workbook, "workbook == null");
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+        checkNotNull(executor, "executor == null");
+
+        final WriteOptions snapshot = options.newWriteOptions();
+        return AsyncTask.submit(() -> saveAtomically(workbook, path, close, snapshot), result -> {
+        }, executor);
+    }
+
     /**
      * Writes the given workbook to the specified output stream. Does not close the stream.
      * 
@@ -491,11 +1107,95 @@ final public class Workbooks {
      */
     public static <T extends OutputStream> T write(final Workbook workbook, final T out, final boolean close) throws IOException {
         checkNotNull(out, "out == null");
+        writeAndClose(workbook, out, null, close, null);
+        return out;
+    }
+
+    /**
+     * Writes the given workbook to the specified output stream using the specified options. Does not close the stream.
+     * <p>
+     * {@link Format#STREAMING_OFFICE_OPEN_XML Streaming} workbooks created by this class are written directly with the
+     * specified compression level, the rows of each sheet are compressed while they are copied from the temporary files.
+     * The zip64 mode of the {@link StreamingOptions} is not used, zip64 extensions are added only when needed. Other
+     * <i>xlsx</i> workbooks are written by POI to a temporary file in POI's default temporary-file directory and then
+     * recompressed, which only pays off for a smaller or faster to read file. With the default compression level and a
+     * parallelism of 1 they are written by POI directly. The options have no effect on <i>xls</i> workbooks.
+     * 
+     * @param <T>      the type of output stream
+     * @param workbook the given workbook
+     * @param out      the specified output stream
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @param options  the write options
+     * @throws IOException if an I/O error occurs
+     * @return the specified output stream
+     */
+    public static <T extends OutputStream> T write(final Workbook workbook, final T out, final boolean close, final WriteOptions options) throws IOException {
+        checkNotNull(out, "out == null");
+        checkNotNull(options, "options == null");
+        writeAndClose(workbook, out, null, close, options.newWriteOptions());
+        return out;
+    }
 
+    /**
+     * Writes the given workbook to the specified channel using the default {@link WriteOptions}. Does not close the
+     * channel.
+     * 
+     * @param <T>      the type of channel
+     * @param workbook the given workbook
+     * @param channel  the specified channel
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @throws IOException if an I/O error occurs
+     * @return the specified channel
+     * @see #write(Workbook, WritableByteChannel, boolean, WriteOptions)
+     */
+    public static <T extends WritableByteChannel> T write(final Workbook workbook, final T channel, final boolean close) throws IOException {
+        return write(workbook, channel, close, new WriteOptions());
+    }
+
+    /**
+     * Writes the given workbook to the specified channel using the specified options. Does not close the channel.
+     * <p>
+     * Data which is already compressed when the workbook is written is moved to the channel without being decompressed,
+     * and if the channel is a {@link FileChannel} it is copied with {@link FileChannel#transferTo(long, long,
+     * WritableByteChannel) transferTo}, which avoids copying it through the Java heap on most platforms. For
+     * {@link Format#STREAMING_OFFICE_OPEN_XML streaming} workbooks created with
+     * {@link StreamingOptions#setCompressTempFiles(boolean) compressed temporary files} this applies to the rows of every
+     * sheet when the options use the {@link WriteOptions.Compression#DEFAULT default} compression level, so writing a
+     * large workbook is bound by the disk rather than by the CPU. Everything else is written as described in
+     * {@link #write(Workbook, OutputStream, boolean, WriteOptions)}.
+     * 
+     * @param <T>      the type of channel
+     * @param workbook the given workbook
+     * @param channel  the specified channel
+     * @param close    whether or not to {@link Workbook#close() close} the workbook
+     * @param options  the write options
+     * @throws IOException if an I/O error occurs
+     * @return the specified channel
+     */
+    public static <T extends WritableByteChannel> T write(final Workbook workbook, final T channel, final boolean close, final WriteOptions options) throws IOException {
+        checkNotNull(channel, "channel == null");
+        checkNotNull(options, "options == null");
+        final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16); // only used when POI writes the workbook
+        writeAndClose(workbook, out, channel, close, options.newWriteOptions());
+        out.flush();
+        return channel;
+    }
+
+    // options is null to let POI write the workbook, channel is null unless out writes to it
+    private static void writeAndClose(final Workbook workbook, final OutputStream out, final WritableByteChannel channel, final boolean close, final WriteOptions options) throws IOException {
         Throwable first = null;
 
         try {
-            workbook.write(out);
+            if (options == null || workbook instanceof HSSFWorkbook)
+                workbook.write(out);
+            else if (options.isPoiCompression() && !(workbook instanceof StreamingWorkbook))
+                workbook.write(out); // recompressing would only compress everything a second time
+            else if (workbook instanceof StreamingWorkbook && channel != null)
+                ((StreamingWorkbook) workbook).write(channel, options);
+            else if (workbook instanceof StreamingWorkbook)
+                ((StreamingWorkbook) workbook).write(out, options);
+            else
+                recompress(workbook, channel == null ? new ZipWriter(out, options) : new ZipWriter(channel, options));
         } catch (final Throwable t) {
             first = t;
         }
@@ -510,13 +1210,11 @@ final public class Workbooks {
                     first.addSuppressed(t);
             }
 
-//        if (close && workbook instanceof SXSSFWorkbook && !dispose(workbook))
-//            logger.log(Level.WARNING, "SXSSFWorkbook.dispose() failed");
+        if (close && workbook instanceof SXSSFWorkbook)
+            dispose(workbook);
 
         if (first != null)
             Throwables.propagateIfPossible(first, IOException.class);
-
-        return out;
     }
 
 //    /**
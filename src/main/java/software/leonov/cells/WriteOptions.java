@@ -0,0 +1,176 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+/**
+ * Options which control how <i>xlsx</i> files are written by {@link Workbooks#save(org.apache.poi.ss.usermodel.Workbook,
+ * Path, WriteOptions)}, {@link Workbooks#write(org.apache.poi.ss.usermodel.Workbook, java.io.OutputStream, boolean,
+ * WriteOptions)} and {@link XlsxWriter}.
+ * <p>
+ * An <i>xlsx</i> file is a zip file and compressing the sheets is usually the most expensive part of writing it. The
+ * {@link Compression compression level} trades file size for speed. With a {@link #setParallelism(int) parallelism}
+ * greater than 1, large entries are split into blocks which are compressed concurrently, the same way as <a
+ * href="https://zlib.net/pigz/">pigz</a> does. Each block is primed with the last 32 KB of the previous block, so the
+ * compression ratio is nearly the same, and the result is a standard zip file.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   final WriteOptions options = new WriteOptions()
+ *                         .setCompression(Compression.FASTEST)
+ *                         .setParallelism(Runtime.getRuntime().availableProcessors());
+ *
+ *   Workbooks.save(workbook, path, options);
+ * </pre>
+ *
+ * Except for {@link #setSync(boolean) sync}, these options have no effect on {@link Workbooks.Format#BINARY_2003 xls}
+ * workbooks. Instances are reusable.
+ *
+ * @author Zhenya Leonov
+ */
+public final class WriteOptions {
+
+    /**
+     * The compression level of the zip entries.
+     */
+    public static enum Compression {
+
+        /**
+         * No compression, the data is stored in uncompressed deflate blocks. The fastest option, but files are several
+         * times larger.
+         */
+        STORE(Deflater.NO_COMPRESSION),
+
+        /**
+         * The fastest compression level.
+         */
+        FASTEST(Deflater.BEST_SPEED),
+
+        /**
+         * The default compression level, the same as POI uses.
+         */
+        DEFAULT(Deflater.DEFAULT_COMPRESSION),
+
+        /**
+         * The best compression level. Considerably slower and usually only a few percent smaller than {@link #DEFAULT}.
+         */
+        BEST(Deflater.BEST_COMPRESSION);
+
+        private final int level;
+
+        private Compression(final int level) {
+            this.level = level;
+        }
+
+        /**
+         * Returns the {@link Deflater} level of this compression.
+         *
+         * @return the {@code Deflater} level of this compression
+         */
+        public int getLevel() {
+            return level;
+        }
+
+    }
+
+    private Compression compression = Compression.DEFAULT;
+    private int         parallelism = 1;
+    private boolean     sync        = false;
+
+    /**
+     * Creates a new {@code WriteOptions} which compresses with the {@link Compression#DEFAULT default} level on the
+     * writing thread.
+     */
+    public WriteOptions() {
+    }
+
+    /**
+     * Clears all settings, returning this instance to its initial state.
+     *
+     * @return this {@code WriteOptions} instance
+     */
+    public WriteOptions clear() {
+        this.compression = Compression.DEFAULT;
+        this.parallelism = 1;
+        this.sync        = false;
+        return this;
+    }
+
+    /**
+     * Sets the compression level.
+     *
+     * @param compression the compression level
+     * @return this {@code WriteOptions} instance
+     */
+    public WriteOptions setCompression(final Compression compression) {
+        checkNotNull(compression, "compression == null");
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of blocks of an entry which are compressed concurrently. Blocks are compressed in the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}. A value of 1 compresses on the writing thread.
+     *
+     * @param parallelism the maximum number of blocks compressed concurrently
+     * @return this {@code WriteOptions} instance
+     */
+    public WriteOptions setParallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "parallelism < 1");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets whether or not files saved by {@link Workbooks} are forced to the storage device before the save returns. When
+     * {@link Workbooks#saveAtomically(org.apache.poi.ss.usermodel.Workbook, Path, boolean, WriteOptions) saving
+     * atomically} the directory is synced as well, so that the new file survives a crash of the operating system. Syncing
+     * can take a long time on busy disks. The default is {@code false}.
+     *
+     * @param sync whether or not to force saved files to the storage device
+     * @return this {@code WriteOptions} instance
+     */
+    public WriteOptions setSync(final boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    /**
+     * Returns a new {@code WriteOptions} instance populated with the current settings of {@code this}
+     * {@code WriteOptions}.
+     *
+     * @return a new {@code WriteOptions} instance populated with the current settings of {@code this}
+     *         {@code WriteOptions}
+     */
+    public WriteOptions newWriteOptions() {
+        final WriteOptions options = new WriteOptions();
+
+        options.compression = compression;
+        options.parallelism = parallelism;
+        options.sync        = sync;
+
+        return options;
+    }
+
+    Compression getCompression() {
+        return compression;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    boolean isSync() {
+        return sync;
+    }
+
+    // Whether the zip entries are compressed the same way as by POI, the sync setting does not affect the zip file
+    boolean isPoiCompression() {
+        return compression == Compression.DEFAULT && parallelism == 1;
+    }
+
+}
@@ -0,0 +1,271 @@
+package software.leonov.cells;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads a single sheet of an <i>xlsx</i> file into a {@link ColumnBatch}.
+ * <p>
+ * Unlike {@link XSSFRowRecordIterator} this reader does not use {@code XSSFSheetXMLHandler}, which formats every cell
+ * into a {@code String}. Instead the text of each {@code <v>} element is collected into a reusable character buffer and
+ * parsed in place by {@link NumberParser}. Cells outside of the batch's columns, as well as rows outside of the
+ * {@link ReadOptions#setRows(int, int) row range}, are skipped at the XML event level. The shared strings table is only
+ * loaded if a shared string is found in one of the batch's columns.
+ *
+ * @author Zhenya Leonov
+ */
+final class XSSFColumnBatchReader extends ColumnBatchReader {
+
+    private final OPCPackage      pkg;
+    private final InputStream     in;
+    private final XMLStreamReader reader;
+
+    private final ReadOptions options;
+    private final boolean     date1904;
+
+    private ReadOnlySharedStringsTable strings = null;
+
+    private final Text text        = new Text();
+    private boolean    closed      = false;
+    private boolean    stopped     = false;
+    private boolean    inSheetData = false;
+    private int        row         = -1; // the 0-based row index of the current row
+    private int        column      = -1; // the 0-based column index of the current cell
+
+    /**
+     * Creates a new reader which fills the specified batch from the specified sheet.
+     *
+     * @param file    the <i>xlsx</i> file
+     * @param options the read options
+     * @param batch   the batch to fill
+     * @throws IOException if an I/O error occurs
+     */
+    XSSFColumnBatchReader(final File file, final ReadOptions options, final ColumnBatch batch) throws IOException {
+        super(batch);
+        this.options = batch.lock(options);
+
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (final OpenXML4JException e) {
+            throw new IOException(e);
+        }
+
+        InputStream in = null;
+        try {
+            final XSSFReader xssf = new XSSFReader(pkg);
+            this.date1904 = isDate1904(xssf);
+
+            in = XSSFRowRecordIterator.openSheet(xssf, this.options.getSheetIndex(), this.options.getSheetName());
+
+            this.reader = XSSFRowRecordIterator.FACTORY.createXMLStreamReader(in);
+            this.in     = in;
+        } catch (final OpenXML4JException | XMLStreamException e) {
+            XSSFRowRecordIterator.close(in);
+            pkg.revert();
+            throw new IOException(e);
+        } catch (final IOException | RuntimeException e) {
+            XSSFRowRecordIterator.close(in);
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    @Override
+    void fill() throws IOException {
+        try {
+            while (!closed && !stopped && !batch.isFull() && reader.hasNext())
+                dispatch(reader.next());
+        } catch (final XMLStreamException | SAXException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            reader.close();
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            try {
+                in.close();
+            } finally {
+                pkg.revert();
+            }
+        }
+    }
+
+    private void dispatch(final int event) throws IOException, SAXException, XMLStreamException {
+        if (event == START_ELEMENT) {
+            final String localName = reader.getLocalName();
+            if (inSheetData && localName.equals("c")) {
+                final String ref = reader.getAttributeValue(null, "r");
+                column = ref == null ? column + 1 : RowRecordIterator.columnIndexOf(ref);
+
+                final int position = batch.positionOf(column);
+                if (position < 0)
+                    skipElement();
+                else
+                    readCell(position, reader.getAttributeValue(null, "t"));
+            } else if (inSheetData && localName.equals("row")) {
+                final String ref = reader.getAttributeValue(null, "r");
+                row    = ref == null ? row + 1 : XSSFRowRecordIterator.rowIndexOf(ref);
+                column = -1;
+                if (row > options.getLastRow())
+                    stopped = true;
+                else if (row < options.getFirstRow())
+                    skipElement();
+            } else if (localName.equals("sheetData"))
+                inSheetData = true;
+        } else if (event == END_ELEMENT) {
+            final String localName = reader.getLocalName();
+            if (localName.equals("row"))
+                batch.endRow(row);
+            else if (localName.equals("sheetData"))
+                stopped = true; // nothing of interest follows the cells
+        }
+    }
+
+    // Reads the value of the current <c> element into the batch and consumes its end tag
+    private void readCell(final int position, final String type) throws IOException, SAXException, XMLStreamException {
+        final boolean inline = "inlineStr".equals(type);
+
+        text.clear();
+        boolean inValue = false;
+        for (int depth = 1; depth > 0;) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) {
+                final String localName = reader.getLocalName();
+                if (inline && localName.equals("rPh"))
+                    skipElement(); // phonetic runs are not part of the value
+                else {
+                    depth++;
+                    inValue = inline ? localName.equals("t") : localName.equals("v");
+                }
+            } else if (event == END_ELEMENT) {
+                depth--;
+                inValue = false;
+            } else if (inValue && (event == CHARACTERS || event == CDATA || event == SPACE))
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+
+        if (text.length() == 0 || "e".equals(type)) // blank or an error
+            return;
+
+        if (type == null || type.equals("n"))
+            batch.setDouble(position, NumberParser.parseDouble(text));
+        else if (type.equals("b"))
+            batch.setBoolean(position, text.length() == 1 && text.charAt(0) == '1');
+        else if (type.equals("s"))
+            batch.setText(position, getSharedStrings().getItemAt((int) NumberParser.parseLong(text)).getString());
+        else
+            batch.setText(position, text);
+    }
+
+    // Reads the date system from the workbookPr element of the workbook part, which precedes the list of sheets
+    private static boolean isDate1904(final XSSFReader xssf) throws IOException, OpenXML4JException, XMLStreamException {
+        try (final InputStream in = xssf.getWorkbookData()) {
+            final XMLStreamReader reader = XSSFRowRecordIterator.FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext())
+                    if (reader.next() == START_ELEMENT) {
+                        final String localName = reader.getLocalName();
+                        if (localName.equals("workbookPr")) {
+                            final String value = reader.getAttributeValue(null, "date1904");
+                            return "1".equals(value) || "true".equalsIgnoreCase(value);
+                        } else if (localName.equals("sheets"))
+                            return false;
+                    }
+                return false;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private ReadOnlySharedStringsTable getSharedStrings() throws IOException, SAXException {
+        if (strings == null)
+            strings = new ReadOnlySharedStringsTable(pkg);
+        return strings;
+    }
+
+    // Skips the current element and all of its content
+    private void skipElement() throws XMLStreamException {
+        for (int depth = 1; depth > 0;) {
+            final int event = reader.next();
+            if (event == START_ELEMENT)
+                depth++;
+            else if (event == END_ELEMENT)
+                depth--;
+        }
+    }
+
+    /**
+     * A growable character buffer which is reused for the value of every cell.
+     */
+    private static final class Text implements CharSequence {
+
+        private char[] chars  = new char[64];
+        private int    length = 0;
+
+        void clear() {
+            length = 0;
+        }
+
+        void append(final char[] source, final int start, final int length) {
+            if (this.length + length > chars.length)
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, this.length + length));
+            System.arraycopy(source, start, chars, this.length, length);
+            this.length += length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+    }
+
+}
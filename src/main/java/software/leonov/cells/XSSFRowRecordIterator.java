@@ -0,0 +1,359 @@
+package software.leonov.cells;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the rows of a single sheet of an <i>xlsx</i> file using {@link XSSFReader} and {@link XSSFSheetXMLHandler}.
+ * <p>
+ * {@code XSSFSheetXMLHandler} is a SAX {@code ContentHandler} which pushes the entire sheet through its callbacks in one
+ * go. Instead of handing it to a SAX parser this iterator pulls events from a StAX {@link XMLStreamReader} and forwards
+ * them to the handler until a complete row is available. Only the current row, the shared strings table, and the styles
+ * table are ever held in memory.
+ * <p>
+ * Cells outside of the {@link ReadOptions#setColumns(int...) projected columns} are skipped at the XML event level, they
+ * are never seen by the handler and are therefore neither parsed nor formatted. Likewise, rows before the
+ * {@link ReadOptions#setRows(int, int) first row} are skipped in their entirety. Once the last row has been read, or the
+ * {@link ReadOptions#setStopCondition(int, java.util.function.Predicate) stop condition} is satisfied, the sheet is
+ * closed and the remainder of the file is never parsed.
+ *
+ * @author Zhenya Leonov
+ */
+final class XSSFRowRecordIterator extends RowRecordIterator {
+
+    static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    private static final String ERROR_PREFIX = "ERROR:";
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final OPCPackage          pkg;
+    private final InputStream         in;
+    private final XMLStreamReader     reader;
+    private final XSSFSheetXMLHandler handler;
+    private final Attributes          attributes;
+
+    private final ReadOptions options;
+
+    private final RowRecord.Buffer buffer      = new RowRecord.Buffer();
+    private RowRecord              next        = null;
+    private boolean                closed      = false;
+    private boolean                stopped     = false;
+    private boolean                inSheetData = false;
+    private int                    row         = -1; // the 0-based row index of the current row
+    private int                    column      = -1; // the 0-based column index of the current cell
+    private boolean                error       = false; // whether the current cell is an error cell
+    private String                 key         = null;  // the value of the key column of the current row
+
+    /**
+     * Creates a new iterator over the rows of the specified sheet.
+     *
+     * @param file    the <i>xlsx</i> file
+     * @param options the read options
+     * @throws IOException if an I/O error occurs
+     */
+    XSSFRowRecordIterator(final File file, final ReadOptions options) throws IOException {
+        this.options = options.newReadOptions();
+
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (final OpenXML4JException e) {
+            throw new IOException(e);
+        }
+
+        InputStream in = null;
+        try {
+            final XSSFReader xssf = new XSSFReader(pkg);
+
+            in = openSheet(xssf, this.options.getSheetIndex(), this.options.getSheetName());
+
+            this.handler    = new XSSFSheetXMLHandler(xssf.getStylesTable(), null, new ReadOnlySharedStringsTable(pkg), new ContentsHandler(), new DataFormatter(), false);
+            this.reader     = FACTORY.createXMLStreamReader(in);
+            this.attributes = new StaxAttributes(reader);
+            this.in         = in;
+        } catch (final OpenXML4JException | SAXException | XMLStreamException e) {
+            close(in);
+            pkg.revert();
+            throw new IOException(e);
+        } catch (final IOException | RuntimeException e) {
+            close(in);
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    @Override
+    protected RowRecord computeNext() {
+        try {
+            while (next == null) {
+                if (closed || stopped || !reader.hasNext()) {
+                    close();
+                    return endOfData();
+                }
+                dispatch(reader.next());
+            }
+        } catch (final XMLStreamException | SAXException e) {
+            throw new UncheckedIOException(new IOException(e));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final RowRecord record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            reader.close();
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            try {
+                in.close();
+            } finally {
+                pkg.revert();
+            }
+        }
+    }
+
+    private void dispatch(final int event) throws SAXException, XMLStreamException {
+        switch (event) {
+        case START_ELEMENT:
+            final String localName = reader.getLocalName();
+            if (inSheetData && localName.equals("c")) {
+                final String ref = reader.getAttributeValue(null, "r");
+                column = ref == null ? column + 1 : columnIndexOf(ref);
+                error  = "e".equals(reader.getAttributeValue(null, "t"));
+                if (!options.isRead(column)) {
+                    skipElement();
+                    break;
+                }
+            } else if (inSheetData && localName.equals("row")) {
+                final String ref = reader.getAttributeValue(null, "r");
+                row    = ref == null ? row + 1 : rowIndexOf(ref);
+                column = -1;
+                if (row > options.getLastRow()) {
+                    stopped = true;
+                    break;
+                } else if (row < options.getFirstRow()) {
+                    skipElement();
+                    break;
+                }
+            } else if (localName.equals("sheetData"))
+                inSheetData = true;
+            handler.startElement(reader.getNamespaceURI(), localName, localName, attributes);
+            break;
+        case END_ELEMENT:
+            if (reader.getLocalName().equals("sheetData"))
+                inSheetData = false;
+            handler.endElement(reader.getNamespaceURI(), reader.getLocalName(), reader.getLocalName());
+            break;
+        case CHARACTERS:
+        case CDATA:
+        case SPACE:
+            handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            break;
+        default:
+            break;
+        }
+    }
+
+    // Skips the current element and all of its content without notifying the handler
+    private void skipElement() throws XMLStreamException {
+        for (int depth = 1; depth > 0;) {
+            final int event = reader.next();
+            if (event == START_ELEMENT)
+                depth++;
+            else if (event == END_ELEMENT)
+                depth--;
+        }
+    }
+
+    // Returns the 0-based index of the specified 1-based row number without allocating
+    static int rowIndexOf(final String ref) {
+        int row = 0;
+        for (int i = 0; i < ref.length(); i++)
+            row = row * 10 + ref.charAt(i) - '0';
+        return row - 1;
+    }
+
+    static InputStream openSheet(final XSSFReader xssf, final int index, final String name) throws IOException, OpenXML4JException {
+        final XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssf.getSheetsData();
+
+        for (int i = 0; sheets.hasNext(); i++) {
+            final InputStream in = sheets.next();
+            if (name == null ? i == index : name.equalsIgnoreCase(sheets.getSheetName()))
+                return in;
+            in.close();
+        }
+
+        throw new IllegalArgumentException(name == null ? "sheet index out of range: " + index : "sheet not found: " + name);
+    }
+
+    static void close(final InputStream in) {
+        if (in != null)
+            try {
+                in.close();
+            } catch (final IOException e) {
+                // ignore, an exception is already being thrown
+            }
+    }
+
+    // The row and column indexes are tracked by dispatch(int) which sees every row and cell, including those which are
+    // skipped
+    private final class ContentsHandler implements SheetContentsHandler {
+
+        @Override
+        public void startRow(final int rowNum) {
+        }
+
+        @Override
+        public void endRow(final int rowNum) {
+            final String value = key;
+            key = null;
+
+            if (options.isStopRow(value)) {
+                stopped = true;
+                buffer.clear();
+            } else if (!buffer.isEmpty())
+                next = buffer.build(row);
+        }
+
+        @Override
+        public void cell(final String cellReference, final String formattedValue, final XSSFComment comment) {
+            // XSSFSheetXMLHandler prefixes error values with "ERROR:", the HSSF reader yields them as Excel displays them
+            final String value = error && formattedValue != null && formattedValue.startsWith(ERROR_PREFIX) ? formattedValue.substring(ERROR_PREFIX.length()) : formattedValue;
+
+            if (column == options.getKeyColumn())
+                key = value;
+            if (options.isProjected(column))
+                buffer.add(column, value);
+        }
+
+        @Override
+        public void headerFooter(final String text, final boolean isHeader, final String tagName) {
+        }
+
+    }
+
+    /**
+     * A SAX {@code Attributes} view of the attributes of the current {@code START_ELEMENT} of an {@code XMLStreamReader}.
+     */
+    private static final class StaxAttributes implements Attributes {
+
+        private final XMLStreamReader reader;
+
+        StaxAttributes(final XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int getLength() {
+            return reader.getAttributeCount();
+        }
+
+        @Override
+        public String getURI(final int index) {
+            final String uri = reader.getAttributeNamespace(index);
+            return uri == null ? "" : uri;
+        }
+
+        @Override
+        public String getLocalName(final int index) {
+            return reader.getAttributeLocalName(index);
+        }
+
+        @Override
+        public String getQName(final int index) {
+            final String prefix = reader.getAttributePrefix(index);
+            return prefix == null || prefix.isEmpty() ? reader.getAttributeLocalName(index) : prefix + ":" + reader.getAttributeLocalName(index);
+        }
+
+        @Override
+        public String getType(final int index) {
+            return reader.getAttributeType(index);
+        }
+
+        @Override
+        public String getValue(final int index) {
+            return reader.getAttributeValue(index);
+        }
+
+        @Override
+        public int getIndex(final String uri, final String localName) {
+            for (int i = 0; i < getLength(); i++)
+                if (getURI(i).equals(uri) && getLocalName(i).equals(localName))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public int getIndex(final String qName) {
+            for (int i = 0; i < getLength(); i++)
+                if (getQName(i).equals(qName))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public String getType(final String uri, final String localName) {
+            final int index = getIndex(uri, localName);
+            return index < 0 ? null : getType(index);
+        }
+
+        @Override
+        public String getType(final String qName) {
+            final int index = getIndex(qName);
+            return index < 0 ? null : getType(index);
+        }
+
+        @Override
+        public String getValue(final String uri, final String localName) {
+            final int index = getIndex(uri, localName);
+            return index < 0 ? null : getValue(index);
+        }
+
+        @Override
+        public String getValue(final String qName) {
+            if (qName.indexOf(':') < 0) // the common case, unqualified attributes such as "r", "s", or "t"
+                return reader.getAttributeValue(null, qName);
+            final int index = getIndex(qName);
+            return index < 0 ? null : getValue(index);
+        }
+
+    }
+
+}
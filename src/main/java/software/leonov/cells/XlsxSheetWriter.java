@@ -0,0 +1,321 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import software.leonov.cells.Workbooks.Format;
+
+/**
+ * A forward-only writer of a single sheet of an {@link XlsxWriter}.
+ * <p>
+ * Sheet writers returned by {@link XlsxWriter#newSheet(String)} write to their own compressed temporary part and can be
+ * filled concurrently, each by its own thread. A sheet writer must be {@link #close() closed} before the
+ * {@code XlsxWriter} is closed. Instances are not thread-safe, but may be handed from one thread to another.
+ * <p>
+ * Rows within a sheet and cells within a row are written in order. Rows and cells can be skipped but not revisited.
+ * Styles are referred to by the index returned from {@link XlsxWriter#addStyle(software.leonov.cells.util.StyleBuilder)}.
+ *
+ * @author Zhenya Leonov
+ */
+public final class XlsxSheetWriter implements Closeable {
+
+    private static final int MAX_ROWS    = Format.OFFICE_OPEN_XML.getMaxRowNum();
+    private static final int MAX_COLUMNS = Format.OFFICE_OPEN_XML.getMaxColNum();
+
+    private final XlsxWriter   workbook;
+    private final String       name;
+    private final XmlOutput    xml;
+    private final DeflatedPart part;
+
+    private boolean          inRow  = false;
+    private int              row    = -1;
+    private int              column = -1;
+    private volatile boolean closed = false; // read by the XlsxWriter, possibly while this sheet is written
+
+    XlsxSheetWriter(final XlsxWriter workbook, final String name, final OutputStream out, final DeflatedPart part) throws IOException {
+        this.workbook = workbook;
+        this.name     = name;
+        this.xml      = new XmlOutput(out);
+        this.part     = part;
+
+        xml.markup(XlsxWriter.XML_DECLARATION).markup("<worksheet xmlns=\"" + XlsxWriter.MAIN_NS + "\"><sheetData>");
+    }
+
+    /**
+     * Returns the name of this sheet.
+     *
+     * @return the name of this sheet
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Starts the row following the current row, ending the current row if there is one.
+     *
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter startRow() throws IOException {
+        return startRow(row + 1);
+    }
+
+    /**
+     * Starts the specified row, ending the current row if there is one. Rows between the current row and the specified row
+     * are left empty.
+     *
+     * @param index the 0-based index of the row, which must be greater than the index of the current row
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter startRow(final int index) throws IOException {
+        checkState(!closed, "closed");
+        checkArgument(index > row, "index <= current row");
+        checkArgument(index < MAX_ROWS, "index >= %s", MAX_ROWS);
+
+        endRow();
+
+        xml.markup("<row r=\"").number(index + 1).markup("\">");
+
+        inRow  = true;
+        row    = index;
+        column = -1;
+        return this;
+    }
+
+    /**
+     * Leaves the next cell in the current row empty.
+     *
+     * @return this {@code XlsxSheetWriter} instance
+     */
+    public XlsxSheetWriter skipCell() {
+        nextColumn();
+        return this;
+    }
+
+    /**
+     * Leaves the next {@code n} cells in the current row empty.
+     *
+     * @param n the number of cells to skip
+     * @return this {@code XlsxSheetWriter} instance
+     */
+    public XlsxSheetWriter skipCells(final int n) {
+        checkArgument(n >= 0, "n < 0");
+        checkState(inRow, "no current row");
+        checkArgument(column + n < MAX_COLUMNS, "too many columns");
+        column += n;
+        return this;
+    }
+
+    /**
+     * Writes an empty cell with the specified style.
+     *
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeBlank(final int style) throws IOException {
+        startCell(style, null);
+        xml.markup("/>");
+        return this;
+    }
+
+    /**
+     * Writes a boolean cell.
+     *
+     * @param value the value
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeBoolean(final boolean value) throws IOException {
+        return writeBoolean(value, 0);
+    }
+
+    /**
+     * Writes a boolean cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeBoolean(final boolean value, final int style) throws IOException {
+        startCell(style, "b");
+        xml.markup(value ? "><v>1</v></c>" : "><v>0</v></c>");
+        return this;
+    }
+
+    /**
+     * Writes a numeric cell. {@code NaN} and infinite values are written as the {@code #NUM!} error, the same way as
+     * {@link org.apache.poi.ss.usermodel.Cell#setCellValue(double) Cell.setCellValue(double)}.
+     *
+     * @param value the value
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeNumber(final double value) throws IOException {
+        return writeNumber(value, 0);
+    }
+
+    /**
+     * Writes a numeric cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeNumber(final double value, final int style) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            startCell(style, "e");
+            xml.markup("><v>#NUM!</v></c>");
+        } else {
+            startCell(style, null);
+            xml.markup("><v>").number(value).markup("</v></c>");
+        }
+        return this;
+    }
+
+    /**
+     * Writes a string cell. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeString(final CharSequence value) throws IOException {
+        return writeString(value, 0);
+    }
+
+    /**
+     * Writes a string cell with the specified style. A {@code null} value writes an empty cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeString(final CharSequence value, final int style) throws IOException {
+        if (value == null)
+            return style == 0 ? skipCell() : writeBlank(style);
+
+        checkArgument(value.length() <= Cells.MAX_CELL_SIZE, "value.length() > %s", Cells.MAX_CELL_SIZE);
+
+        startCell(style, "inlineStr");
+        if (value.length() > 0 && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' '))
+            xml.markup("><is><t xml:space=\"preserve\">");
+        else
+            xml.markup("><is><t>");
+        xml.text(value).markup("</t></is></c>");
+        return this;
+    }
+
+    /**
+     * Writes a date cell using the built-in {@code m/d/yy} format. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeDate(final LocalDate value) throws IOException {
+        return writeDate(value, workbook.getDateStyle());
+    }
+
+    /**
+     * Writes a date cell with the specified style, which should have a date format. A {@code null} value leaves the cell
+     * empty.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeDate(final LocalDate value, final int style) throws IOException {
+        return value == null ? skipCell() : writeNumber(SerialDates.toSerial(value, false), style);
+    }
+
+    /**
+     * Writes a date-time cell using the built-in {@code m/d/yy h:mm} format. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeDate(final LocalDateTime value) throws IOException {
+        return writeDate(value, workbook.getDateTimeStyle());
+    }
+
+    /**
+     * Writes a date-time cell with the specified style, which should have a date format. A {@code null} value leaves the
+     * cell empty.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxSheetWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter writeDate(final LocalDateTime value, final int style) throws IOException {
+        return value == null ? skipCell() : writeNumber(SerialDates.toSerial(value, false), style);
+    }
+
+    /**
+     * Ends this sheet. No more rows can be written.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            endRow();
+            xml.markup("</sheetData></worksheet>").flush();
+        } finally {
+            if (part != null)
+                part.finish();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    DeflatedPart getPart() {
+        return part;
+    }
+
+    private int nextColumn() {
+        checkState(inRow, "no current row");
+        checkState(column + 1 < MAX_COLUMNS, "too many columns");
+        return ++column;
+    }
+
+    // Writes the start tag of the next cell up to, but not including, the closing '>'
+    private void startCell(final int style, final String type) throws IOException {
+        workbook.checkStyle(style);
+        final int column = nextColumn();
+
+        xml.markup("<c r=\"").cellReference(column, row);
+        if (style != 0)
+            xml.markup("\" s=\"").number(style);
+        if (type != null)
+            xml.markup("\" t=\"").markup(type);
+        xml.markup("\"");
+    }
+
+    private void endRow() throws IOException {
+        if (inRow) {
+            xml.markup("</row>");
+            inRow = false;
+        }
+    }
+
+}
@@ -0,0 +1,581 @@
+package software.leonov.cells;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import software.leonov.cells.util.StyleBuilder;
+
+/**
+ * A forward-only writer which writes <i>xlsx</i> files directly, without going through POI's usermodel.
+ * <p>
+ * Even an {@link SXSSFWorkbook} creates a row and a cell object for every value and writes each sheet to a temporary
+ * file through a {@code Writer} before copying it into the final file. An {@code XlsxWriter} instead encodes each
+ * value as SpreadsheetML straight into a reusable byte buffer which is written directly into the zip entry of the
+ * current sheet. Integers, most decimal numbers, booleans, dates, and strings are written without creating any
+ * garbage. Strings are stored inline rather than in a shared strings table.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ *   try (final XlsxWriter writer = new XlsxWriter(path)) {
+ *       final int header = writer.addStyle(new StyleBuilder().setSolidFillColor(IndexedColors.GREY_25_PERCENT));
+ *
+ *       writer.startSheet("Orders");
+ *       writer.startRow().writeString("Id", header).writeString("Date", header).writeString("Amount", header);
+ *
+ *       for (final Order order : orders)
+ *           writer.startRow()
+ *                 .writeNumber(order.getId())
+ *                 .writeDate(order.getDate())
+ *                 .writeNumber(order.getAmount());
+ *   }
+ * </pre>
+ *
+ * Sheets, rows within a sheet, and cells within a row are written in order. Rows and cells can be skipped but not
+ * revisited. Styles are defined with a {@link StyleBuilder} and referred to by the index returned from
+ * {@link #addStyle(StyleBuilder)}, they can be added at any time before the writer is closed.
+ * <p>
+ * Independent sheets can also be written concurrently. {@link #newSheet(String)} reserves the next sheet and returns an
+ * {@link XlsxSheetWriter} which writes to its own compressed temporary part, so that each sheet can be filled and
+ * compressed by its own thread:
+ *
+ * <pre>
+ *   try (final XlsxWriter writer = new XlsxWriter(path)) {
+ *       final List&lt;CompletableFuture&lt;Void&gt;&gt; futures = new ArrayList&lt;&gt;();
+ *
+ *       for (final Report report : reports) {
+ *           final XlsxSheetWriter sheet = writer.newSheet(report.getName());
+ *           futures.add(CompletableFuture.runAsync(() -&gt; report.writeTo(sheet), executor)); // closes the sheet
+ *       }
+ *
+ *       CompletableFuture.allOf(futures.toArray(new CompletableFuture&lt;?&gt;[0])).join();
+ *   }
+ * </pre>
+ *
+ * The parts are copied into the file in the order the sheets were reserved when the writer is closed. Since strings
+ * are stored inline and styles are shared by all sheets there is nothing to merge. {@link #addStyle(StyleBuilder)} and
+ * {@link #getDataFormat(String)} may be called from any thread, the other methods of this class must be called from one
+ * thread at a time.
+ * <p>
+ * The file is not complete until the writer is {@link #close() closed}.
+ *
+ * @author Zhenya Leonov
+ */
+public final class XlsxWriter implements Closeable {
+
+    static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    static final String MAIN_NS          = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final WriteOptions options;
+    private final ZipWriter    zip;
+    private final XmlOutput    xml;
+    private final TempFiles    parts;
+
+    // A scratch workbook which holds the style table, it never contains any sheets
+    private final XSSFWorkbook styles;
+    private volatile int       styleCount;
+    private int                dateStyle     = -1;
+    private int                dateTimeStyle = -1;
+
+    private final List<String>          sheets  = new ArrayList<>();
+    private final List<XlsxSheetWriter> writers = new ArrayList<>(); // sheets written to temporary parts
+    private XlsxSheetWriter             current = null;
+    private boolean                     closed  = false;
+
+    /**
+     * Creates a new {@code XlsxWriter} which writes to the specified file, replacing it if it already exists.
+     *
+     * @param path the path to the file
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter(final Path path) throws IOException {
+        this(path, new WriteOptions());
+    }
+
+    /**
+     * Creates a new {@code XlsxWriter} which writes to the specified file using the specified options, replacing it if it
+     * already exists.
+     *
+     * @param path    the path to the file
+     * @param options the write options
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter(final Path path, final WriteOptions options) throws IOException {
+        this(open(path, options));
+    }
+
+    /**
+     * Creates a new {@code XlsxWriter} which writes to the specified stream. The stream is closed when this writer is
+     * closed.
+     *
+     * @param out the output stream
+     */
+    public XlsxWriter(final OutputStream out) {
+        this(out, new WriteOptions());
+    }
+
+    /**
+     * Creates a new {@code XlsxWriter} which writes to the specified stream using the specified options. The stream is
+     * closed when this writer is closed.
+     * <p>
+     * The parallelism of the options applies to sheets written by {@link #startSheet(String)}. Sheets written by
+     * {@link #newSheet(String)} are compressed by the threads which write them.
+     *
+     * @param out     the output stream
+     * @param options the write options
+     */
+    public XlsxWriter(final OutputStream out, final WriteOptions options) {
+        this(new ZipWriter(new BufferedOutputStream(checkNotNull(out, "out == null"), 1 << 16), checkNotNull(options, "options == null").newWriteOptions()));
+    }
+
+    /**
+     * Creates a new {@code XlsxWriter} which writes to the specified channel using the specified options. The channel is
+     * closed when this writer is closed.
+     * <p>
+     * Sheets written by {@link #newSheet(String)} are already compressed when this writer is closed. If the channel is a
+     * {@link FileChannel} they are copied from their temporary parts to the file with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel) transferTo}, which avoids copying the data through the
+     * Java heap on most platforms.
+     *
+     * @param channel the channel
+     * @param options the write options
+     */
+    public XlsxWriter(final WritableByteChannel channel, final WriteOptions options) {
+        this(new ZipWriter(checkNotNull(channel, "channel == null"), checkNotNull(options, "options == null").newWriteOptions()));
+    }
+
+    // Closes the underlying stream if this writer cannot be created
+    private XlsxWriter(final ZipWriter zip) {
+        this.zip     = zip;
+        this.options = zip.getOptions();
+        this.xml     = new XmlOutput(null); // redirected to each part of the workbook
+
+        try {
+            this.styles     = new XSSFWorkbook();
+            this.styleCount = styles.getNumCellStyles();
+            this.parts      = TempFiles.register(this, null);
+        } catch (final RuntimeException | Error e) {
+            try {
+                zip.abort();
+            } catch (final IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    // Opens the file only after the arguments have been checked, so that it is not left open if they are invalid
+    private static ZipWriter open(final Path path, final WriteOptions options) throws IOException {
+        checkNotNull(path, "path == null");
+        checkNotNull(options, "options == null");
+
+        final WriteOptions snapshot = options.newWriteOptions();
+        final FileChannel  channel  = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        try {
+            return new ZipWriter(channel, snapshot);
+        } catch (final RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a cell style defined by the specified builder to this workbook and returns its index. If a style with the same
+     * settings was already added its index is returned instead, so calling this method for every row does not bloat the
+     * file.
+     *
+     * @param builder the style builder
+     * @return the index of the style
+     */
+    public synchronized int addStyle(final StyleBuilder builder) {
+        checkNotNull(builder, "builder == null");
+        checkState(!closed, "closed");
+        final int index = builder.getOrCreate(styles).getIndex() & 0xFFFF;
+        styleCount = styles.getNumCellStyles();
+        return index;
+    }
+
+    /**
+     * Returns the index of the specified data format, such as {@code "#,##0.00"} or {@code "yyyy-mm-dd"}, adding it to
+     * this workbook if necessary. The index can be passed to {@link StyleBuilder#setDataFormat(short)}.
+     *
+     * @param format the data format
+     * @return the index of the specified data format
+     */
+    public synchronized short getDataFormat(final String format) {
+        checkNotNull(format, "format == null");
+        checkState(!closed, "closed");
+        return styles.createDataFormat().getFormat(format);
+    }
+
+    /**
+     * Starts a new sheet, ending the current sheet if there is one.
+     *
+     * @param name the name of the sheet
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter startSheet(final String name) throws IOException {
+        addSheet(name);
+        endSheet();
+
+        current = new XlsxSheetWriter(this, name, zip.startEntry(getSheetPartName(sheets.size())), null);
+        return this;
+    }
+
+    /**
+     * Reserves the next sheet and returns a writer which writes it to a compressed temporary part, ending the current
+     * sheet if there is one. The returned writer can be filled by another thread and must be closed before this
+     * {@code XlsxWriter} is closed.
+     *
+     * @param name the name of the sheet
+     * @return a writer for the new sheet
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxSheetWriter newSheet(final String name) throws IOException {
+        addSheet(name);
+        endSheet();
+
+        final DeflatedPart    part   = new DeflatedPart(parts.createTempFile("cells-sheet", ".xml.deflate"), options.getCompression().getLevel());
+        final XlsxSheetWriter writer = new XlsxSheetWriter(this, name, part.getOutputStream(), part);
+        writers.add(writer);
+        return writer;
+    }
+
+    /**
+     * Starts the row following the current row, ending the current row if there is one.
+     *
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter startRow() throws IOException {
+        current().startRow();
+        return this;
+    }
+
+    /**
+     * Starts the specified row, ending the current row if there is one. Rows between the current row and the specified row
+     * are left empty.
+     *
+     * @param index the 0-based index of the row, which must be greater than the index of the current row
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter startRow(final int index) throws IOException {
+        current().startRow(index);
+        return this;
+    }
+
+    /**
+     * Leaves the next cell in the current row empty.
+     *
+     * @return this {@code XlsxWriter} instance
+     */
+    public XlsxWriter skipCell() {
+        current().skipCell();
+        return this;
+    }
+
+    /**
+     * Leaves the next {@code n} cells in the current row empty.
+     *
+     * @param n the number of cells to skip
+     * @return this {@code XlsxWriter} instance
+     */
+    public XlsxWriter skipCells(final int n) {
+        current().skipCells(n);
+        return this;
+    }
+
+    /**
+     * Writes an empty cell with the specified style.
+     *
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeBlank(final int style) throws IOException {
+        current().writeBlank(style);
+        return this;
+    }
+
+    /**
+     * Writes a boolean cell.
+     *
+     * @param value the value
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeBoolean(final boolean value) throws IOException {
+        current().writeBoolean(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeBoolean(final boolean value, final int style) throws IOException {
+        current().writeBoolean(value, style);
+        return this;
+    }
+
+    /**
+     * Writes a numeric cell. {@code NaN} and infinite values are written as the {@code #NUM!} error, the same way as
+     * {@link org.apache.poi.ss.usermodel.Cell#setCellValue(double) Cell.setCellValue(double)}.
+     *
+     * @param value the value
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeNumber(final double value) throws IOException {
+        current().writeNumber(value);
+        return this;
+    }
+
+    /**
+     * Writes a numeric cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeNumber(final double value, final int style) throws IOException {
+        current().writeNumber(value, style);
+        return this;
+    }
+
+    /**
+     * Writes a string cell. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeString(final CharSequence value) throws IOException {
+        current().writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a string cell with the specified style. A {@code null} value writes an empty cell with the specified style.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeString(final CharSequence value, final int style) throws IOException {
+        current().writeString(value, style);
+        return this;
+    }
+
+    /**
+     * Writes a date cell using the built-in {@code m/d/yy} format. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeDate(final LocalDate value) throws IOException {
+        current().writeDate(value);
+        return this;
+    }
+
+    /**
+     * Writes a date cell with the specified style, which should have a date format. A {@code null} value leaves the cell
+     * empty.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeDate(final LocalDate value, final int style) throws IOException {
+        current().writeDate(value, style);
+        return this;
+    }
+
+    /**
+     * Writes a date-time cell using the built-in {@code m/d/yy h:mm} format. A {@code null} value leaves the cell empty.
+     *
+     * @param value the value
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeDate(final LocalDateTime value) throws IOException {
+        current().writeDate(value);
+        return this;
+    }
+
+    /**
+     * Writes a date-time cell with the specified style, which should have a date format. A {@code null} value leaves the
+     * cell empty.
+     *
+     * @param value the value
+     * @param style the index of the cell style
+     * @return this {@code XlsxWriter} instance
+     * @throws IOException if an I/O error occurs
+     */
+    public XlsxWriter writeDate(final LocalDateTime value, final int style) throws IOException {
+        current().writeDate(value, style);
+        return this;
+    }
+
+    /**
+     * Ends the current sheet, copies the parts of the sheets returned by {@link #newSheet(String)} into the file, and
+     * writes the remaining parts of the file. If no sheets were written an empty sheet named <i>Sheet1</i> is added, since
+     * a workbook must contain at least one sheet.
+     * <p>
+     * If the file cannot be completed the underlying stream is closed without finishing the zip file, so that an incomplete
+     * file is never mistaken for a valid one. The temporary parts of sheets which are still being written are deleted
+     * once they are no longer in use.
+     *
+     * @throws IOException           if an I/O error occurs
+     * @throws IllegalStateException if a sheet returned by {@link #newSheet(String)} has not been closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        boolean finished = false;
+        try {
+            if (sheets.isEmpty())
+                startSheet("Sheet1");
+            endSheet();
+
+            for (final XlsxSheetWriter writer : writers)
+                checkState(writer.isClosed(), "sheet %s has not been closed", writer.getName());
+
+            for (final XlsxSheetWriter writer : writers)
+                zip.writeEntry(getSheetPartName(sheets.indexOf(writer.getName()) + 1), writer.getPart());
+
+            writeWorkbook();
+            zip.finish();
+            finished = true;
+        } finally {
+            closed = true;
+            try {
+                if (finished)
+                    zip.close();
+                else
+                    zip.abort();
+            } finally {
+                styles.close();
+                // Open sheet writers refer to this writer, their parts are deleted after it has been garbage collected
+                if (writers.stream().allMatch(XlsxSheetWriter::isClosed))
+                    parts.delete();
+            }
+        }
+    }
+
+    synchronized int getDateStyle() {
+        if (dateStyle < 0)
+            dateStyle = addStyle(new StyleBuilder().setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy")));
+        return dateStyle;
+    }
+
+    synchronized int getDateTimeStyle() {
+        if (dateTimeStyle < 0)
+            dateTimeStyle = addStyle(new StyleBuilder().setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy h:mm")));
+        return dateTimeStyle;
+    }
+
+    void checkStyle(final int style) {
+        checkArgument(style >= 0 && style < styleCount, "invalid style index: %s", style);
+    }
+
+    private void addSheet(final String name) {
+        checkNotNull(name, "name == null");
+        checkState(!closed, "closed");
+        WorkbookUtil.validateSheetName(name);
+        for (final String sheet : sheets)
+            checkArgument(!sheet.equalsIgnoreCase(name), "duplicate sheet name: %s", name);
+
+        sheets.add(name);
+    }
+
+    private XlsxSheetWriter current() {
+        checkState(current != null, "no current sheet");
+        return current;
+    }
+
+    private void endSheet() throws IOException {
+        if (current != null) {
+            current.close();
+            zip.closeEntry();
+            current = null;
+        }
+    }
+
+    private static String getSheetPartName(final int number) {
+        return "xl/worksheets/sheet" + number + ".xml";
+    }
+
+    private void writeWorkbook() throws IOException {
+        final int count = sheets.size();
+
+        xml.setOutput(zip.startEntry("[Content_Types].xml"));
+        xml.markup(XML_DECLARATION)
+           .markup("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+           .markup("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+           .markup("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+           .markup("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+           .markup("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= count; i++)
+            xml.markup("<Override PartName=\"/xl/worksheets/sheet").number(i).markup(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        xml.markup("</Types>").flush();
+
+        xml.setOutput(zip.startEntry("_rels/.rels"));
+        xml.markup(XML_DECLARATION)
+           .markup("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">")
+           .markup("<Relationship Id=\"rId1\" Type=\"" + RELATIONSHIPS_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>")
+           .markup("</Relationships>").flush();
+
+        xml.setOutput(zip.startEntry("xl/workbook.xml"));
+        xml.markup(XML_DECLARATION).markup("<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + RELATIONSHIPS_NS + "\"><sheets>");
+        for (int i = 1; i <= count; i++)
+            xml.markup("<sheet name=\"").text(sheets.get(i - 1)).markup("\" sheetId=\"").number(i).markup("\" r:id=\"rId").number(i).markup("\"/>");
+        xml.markup("</sheets></workbook>").flush();
+
+        xml.setOutput(zip.startEntry("xl/_rels/workbook.xml.rels"));
+        xml.markup(XML_DECLARATION).markup("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= count; i++)
+            xml.markup("<Relationship Id=\"rId").number(i).markup("\" Type=\"" + RELATIONSHIPS_NS + "/worksheet\" Target=\"worksheets/sheet").number(i).markup(".xml\"/>");
+        xml.markup("<Relationship Id=\"rId").number(count + 1).markup("\" Type=\"" + RELATIONSHIPS_NS + "/styles\" Target=\"styles.xml\"/>");
+        xml.markup("</Relationships>").flush();
+
+        // Closing the entry stream has no effect, the entry is closed by the next entry or by close()
+        styles.getStylesSource().writeTo(zip.startEntry("xl/styles.xml"));
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+package software.leonov.cells;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered writer of UTF-8 encoded XML which writes markup, escaped text, and numbers directly as bytes.
+ * <p>
+ * Unlike a {@code Writer} wrapped around an {@code OutputStream}, no intermediate {@code char[]} or {@code String} is
+ * created: text is encoded and escaped straight into a reusable byte buffer, integers are written digit by digit, and
+ * most {@code double}s are written without calling {@link Double#toString(double)}.
+ *
+ * @author Zhenya Leonov
+ */
+final class XmlOutput {
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17 };
+
+    private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+    private final byte[] buffer;
+    private int          position = 0;
+    private OutputStream out;
+
+    /**
+     * Creates a new {@code XmlOutput} which writes to the specified stream.
+     *
+     * @param out the underlying stream
+     */
+    XmlOutput(final OutputStream out) {
+        this.out    = out;
+        this.buffer = new byte[1 << 16];
+    }
+
+    /**
+     * Flushes this output and redirects it to the specified stream.
+     */
+    void setOutput(final OutputStream out) throws IOException {
+        flush();
+        this.out = out;
+    }
+
+    /**
+     * Writes the specified markup, which must consist of ASCII characters and must not require escaping.
+     */
+    XmlOutput markup(final String markup) throws IOException {
+        final int length = markup.length();
+        if (position + length > buffer.length) {
+            flush();
+            if (length > buffer.length) {
+                for (int i = 0; i < length; i++)
+                    write((byte) markup.charAt(i));
+                return this;
+            }
+        }
+        for (int i = 0; i < length; i++)
+            buffer[position++] = (byte) markup.charAt(i);
+        return this;
+    }
+
+    /**
+     * Writes the specified text, escaping it for use in element content or in a double-quoted attribute value. Characters
+     * which are not allowed in XML 1.0, such as most control characters, are written as {@code _xHHHH_} escapes, the way
+     * Excel stores them.
+     */
+    XmlOutput text(final CharSequence text) throws IOException {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (position + 12 > buffer.length)
+                flush();
+
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                case '<':
+                    ascii("&lt;");
+                    break;
+                case '>':
+                    ascii("&gt;");
+                    break;
+                case '&':
+                    ascii("&amp;");
+                    break;
+                case '"':
+                    ascii("&quot;");
+                    break;
+                case '\t':
+                case '\n':
+                case '\r':
+                    buffer[position++] = (byte) c;
+                    break;
+                case '_':
+                    if (isEscape(text, i))
+                        escape(c); // a literal _xHHHH_ must not be read back as an escape
+                    else
+                        buffer[position++] = (byte) c;
+                    break;
+                default:
+                    if (c < 0x20)
+                        escape(c);
+                    else
+                        buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | cp >> 18);
+                buffer[position++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c) || c == 0xFFFE || c == 0xFFFF)
+                escape(c);
+            else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the specified integer in decimal.
+     */
+    XmlOutput number(final long value) throws IOException {
+        if (position + 20 > buffer.length)
+            flush();
+
+        if (value == Long.MIN_VALUE) {
+            ascii("-9223372036854775808");
+            return this;
+        }
+
+        long v = value;
+        if (v < 0) {
+            buffer[position++] = '-';
+            v = -v;
+        }
+
+        final int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+
+        reverse(start, position - 1);
+        return this;
+    }
+
+    /**
+     * Writes the specified finite {@code double} using the shortest plain decimal representation which reads back as the
+     * same value, falling back to {@link Double#toString(double)} for values which have no such representation with at
+     * most 17 fractional digits, such as 1/3.
+     */
+    XmlOutput number(final double value) throws IOException {
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            number((long) value);
+            return this;
+        }
+
+        final double abs = Math.abs(value);
+        if (abs >= 1e-5 && abs < 1e15)
+            for (int digits = 1; digits < POWERS_OF_TEN.length; digits++) {
+                final double scaled = abs * POWERS_OF_TEN[digits];
+                if (scaled >= 0x1p53)
+                    break;
+                // The division is correctly rounded, so the written digits parse back to exactly the same value
+                if (scaled == Math.rint(scaled) && scaled / POWERS_OF_TEN[digits] == abs) {
+                    writeDecimal(value < 0, (long) scaled, digits);
+                    return this;
+                }
+            }
+
+        return markup(Double.toString(value));
+    }
+
+    /**
+     * Writes the A1-style reference of the specified cell, for example {@code AB12} for column 27 and row 11.
+     */
+    XmlOutput cellReference(final int column, final int row) throws IOException {
+        if (position + 16 > buffer.length)
+            flush();
+
+        final int start = position;
+        for (int c = column + 1; c > 0; c = (c - 1) / 26)
+            buffer[position++] = (byte) ('A' + (c - 1) % 26);
+
+        reverse(start, position - 1);
+        return number(row + 1);
+    }
+
+    /**
+     * Writes any buffered bytes to the underlying stream.
+     */
+    void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void writeDecimal(final boolean negative, long scaled, int digits) throws IOException {
+        if (position + 40 > buffer.length)
+            flush();
+
+        for (; scaled % 10 == 0; digits--) // the same decimal value with fewer digits
+            scaled /= 10;
+
+        if (negative)
+            buffer[position++] = '-';
+
+        final long unit = (long) POWERS_OF_TEN[digits];
+        number(scaled / unit);
+        buffer[position++] = '.';
+
+        final int start = position;
+        long      f     = scaled % unit;
+        for (int i = 0; i < digits; i++, f /= 10)
+            buffer[position++] = (byte) ('0' + f % 10);
+
+        reverse(start, position - 1);
+    }
+
+    // Writes a character which is not allowed in XML 1.0 as _xHHHH_
+    private void escape(final char c) {
+        buffer[position++] = '_';
+        buffer[position++] = 'x';
+        buffer[position++] = HEX[c >> 12 & 0xF];
+        buffer[position++] = HEX[c >> 8 & 0xF];
+        buffer[position++] = HEX[c >> 4 & 0xF];
+        buffer[position++] = HEX[c & 0xF];
+        buffer[position++] = '_';
+    }
+
+    private static boolean isEscape(final CharSequence text, final int i) {
+        if (i + 6 >= text.length() || text.charAt(i + 1) != 'x' || text.charAt(i + 6) != '_')
+            return false;
+        for (int j = i + 2; j < i + 6; j++)
+            if (Character.digit(text.charAt(j), 16) < 0)
+                return false;
+        return true;
+    }
+
+    private void ascii(final String s) {
+        for (int i = 0; i < s.length(); i++)
+            buffer[position++] = (byte) s.charAt(i);
+    }
+
+    private void write(final byte b) throws IOException {
+        if (position == buffer.length)
+            flush();
+        buffer[position++] = b;
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            final byte b = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--]   = b;
+        }
+    }
+
+}
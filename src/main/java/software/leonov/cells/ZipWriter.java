@@ -0,0 +1,469 @@
+package software.leonov.cells;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal writer of standard zip files which, unlike {@code ZipOutputStream}, can also store entries which were
+ * compressed in advance, for example by another thread.
+ * <p>
+ * All entries are deflated, entry names are encoded in UTF-8, and zip64 extensions are used only when an entry, the
+ * number of entries, or the file exceeds the limits of the original format.
+ * <p>
+ * When writing to a channel, compressed data stored in temporary files is moved with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets the operating system copy it without
+ * passing it through the JVM.
+ *
+ * @author Zhenya Leonov
+ */
+final class ZipWriter implements Closeable {
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int DEFLATED        = 8;
+    private static final int UTF8_FLAG       = 1 << 11;
+    private static final int DESCRIPTOR_FLAG = 1 << 3;
+
+    private final OutputStream        out;
+    private final WritableByteChannel channel;
+    private final WriteOptions        options;
+    private final byte[]              header  = new byte[128];
+    private final List<Entry>         entries = new ArrayList<>();
+    private final int                 time;
+    private final int                 date;
+
+    private long                  position = 0;
+    private Entry                 current  = null;
+    private DeflatingOutputStream stream   = null;
+    private boolean               finished = false;
+
+    /**
+     * Creates a new {@code ZipWriter} which writes to the specified stream. The stream is closed when this writer is
+     * closed.
+     *
+     * @param out     the underlying stream
+     * @param options the compression settings of the entries written by {@link #startEntry(String)}
+     */
+    ZipWriter(final OutputStream out, final WriteOptions options) {
+        this(out, null, options);
+    }
+
+    /**
+     * Creates a new {@code ZipWriter} which writes to the specified channel. The channel is closed when this writer is
+     * closed.
+     *
+     * @param channel the underlying channel
+     * @param options the compression settings of the entries written by {@link #startEntry(String)}
+     */
+    ZipWriter(final WritableByteChannel channel, final WriteOptions options) {
+        this(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), channel, options);
+    }
+
+    private ZipWriter(final OutputStream out, final WritableByteChannel channel, final WriteOptions options) {
+        this.out     = out;
+        this.channel = channel;
+        this.options = options;
+
+        final LocalDateTime now = LocalDateTime.now();
+        this.time = now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() >> 1;
+        this.date = Math.max(now.getYear() - 1980, 0) << 9 | now.getMonthValue() << 5 | now.getDayOfMonth();
+    }
+
+    /**
+     * Returns the compression settings of the entries written by {@link #startEntry(String)}.
+     */
+    WriteOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Starts a new entry, closing the current entry if there is one, and returns a stream which compresses the data written
+     * to it into the entry. Closing the returned stream has no effect.
+     *
+     * @param name the name of the entry
+     * @return a stream which writes to the new entry
+     * @throws IOException if an I/O error occurs
+     */
+    OutputStream startEntry(final String name) throws IOException {
+        closeEntry();
+
+        current = new Entry(name, position, UTF8_FLAG | DESCRIPTOR_FLAG);
+        writeLocalHeader(current);
+
+        stream = new DeflatingOutputStream(new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                writeRaw(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                writeRaw(b, off, len);
+            }
+        }, options.getCompression().getLevel(), options.getParallelism());
+
+        return stream;
+    }
+
+    /**
+     * Closes the current entry, if there is one.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void closeEntry() throws IOException {
+        if (current == null)
+            return;
+
+        stream.finish();
+
+        current.crc            = stream.getCrc();
+        current.size           = stream.getSize();
+        current.compressedSize = stream.getCompressedSize();
+
+        // The same as ZipOutputStream: the sizes in the data descriptor are 8 bytes long only when necessary
+        int n = putInt(0, 0x08074b50);
+        n = putInt(n, current.crc);
+        if (current.size >= ZIP64_MAGIC || current.compressedSize >= ZIP64_MAGIC) {
+            n = putLong(n, current.compressedSize);
+            n = putLong(n, current.size);
+        } else {
+            n = putInt(n, current.compressedSize);
+            n = putInt(n, current.size);
+        }
+        writeRaw(header, 0, n);
+
+        entries.add(current);
+        current = null;
+        stream  = null;
+    }
+
+    /**
+     * Writes an entry whose data was compressed in advance, closing the current entry if there is one.
+     *
+     * @param name the name of the entry
+     * @param part the compressed data
+     * @throws IOException if an I/O error occurs
+     */
+    void writeEntry(final String name, final DeflatedPart part) throws IOException {
+        closeEntry();
+
+        final Entry entry = new Entry(name, position, UTF8_FLAG);
+        entry.crc            = part.getCrc();
+        entry.size           = part.getSize();
+        entry.compressedSize = part.getCompressedSize();
+
+        writeLocalHeader(entry);
+        transfer(part, part.getCompressedSize());
+
+        entries.add(entry);
+    }
+
+    /**
+     * Writes an entry which consists of the specified prefix, the data which was compressed in advance, and the specified
+     * suffix, closing the current entry if there is one. Only the prefix and the suffix are compressed.
+     *
+     * @param name   the name of the entry
+     * @param prefix the uncompressed data which precedes the part
+     * @param part   the compressed data
+     * @param suffix the uncompressed data which follows the part
+     * @throws IOException if an I/O error occurs
+     */
+    void writeEntry(final String name, final byte[] prefix, final DeflatedPart part, final byte[] suffix) throws IOException {
+        closeEntry();
+
+        final int    level = options.getCompression().getLevel();
+        final byte[] head  = DeflatingOutputStream.deflate(prefix, null, level, false);
+        final byte[] tail  = DeflatingOutputStream.deflate(suffix, null, level, true);
+
+        final Entry entry = new Entry(name, position, UTF8_FLAG);
+        entry.crc            = combine(combine(crc(prefix), part.getCrc(), part.getSize()), crc(suffix), suffix.length);
+        entry.size           = prefix.length + part.getSize() + suffix.length;
+        entry.compressedSize = head.length + part.getSyncedLength() + tail.length;
+
+        writeLocalHeader(entry);
+        writeRaw(head, 0, head.length);
+        transfer(part, part.getSyncedLength());
+        writeRaw(tail, 0, tail.length);
+
+        entries.add(entry);
+    }
+
+    /**
+     * Closes the current entry and writes the central directory without closing the underlying stream. No more entries
+     * can be written.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        if (finished)
+            return;
+
+        finished = true;
+        closeEntry();
+        writeCentralDirectory();
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying stream without writing the central directory, leaving an incomplete zip file. No more entries
+     * can be written.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void abort() throws IOException {
+        finished = true;
+        out.close();
+    }
+
+    /**
+     * Finishes the zip file and closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeLocalHeader(final Entry entry) throws IOException {
+        final boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+
+        int n = putInt(0, 0x04034b50);
+        n = putShort(n, zip64 ? 45 : 20);
+        n = putShort(n, entry.flags);
+        n = putShort(n, DEFLATED);
+        n = putShort(n, time);
+        n = putShort(n, date);
+        n = putInt(n, entry.crc);
+        n = putInt(n, zip64 ? ZIP64_MAGIC : entry.compressedSize);
+        n = putInt(n, zip64 ? ZIP64_MAGIC : entry.size);
+        n = putShort(n, entry.name.length);
+        n = putShort(n, zip64 ? 20 : 0);
+        writeRaw(header, 0, n);
+        writeRaw(entry.name, 0, entry.name.length);
+
+        if (zip64) {
+            n = putShort(0, 0x0001);
+            n = putShort(n, 16);
+            n = putLong(n, entry.size);
+            n = putLong(n, entry.compressedSize);
+            writeRaw(header, 0, n);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        final long start = position;
+
+        for (final Entry entry : entries) {
+            final boolean size64   = entry.size >= ZIP64_MAGIC;
+            final boolean csize64  = entry.compressedSize >= ZIP64_MAGIC;
+            final boolean offset64 = entry.offset >= ZIP64_MAGIC;
+            final int     extra    = (size64 ? 8 : 0) + (csize64 ? 8 : 0) + (offset64 ? 8 : 0);
+            final boolean zip64    = extra > 0;
+
+            int n = putInt(0, 0x02014b50);
+            n = putShort(n, 45);
+            n = putShort(n, zip64 ? 45 : 20);
+            n = putShort(n, entry.flags);
+            n = putShort(n, DEFLATED);
+            n = putShort(n, time);
+            n = putShort(n, date);
+            n = putInt(n, entry.crc);
+            n = putInt(n, csize64 ? ZIP64_MAGIC : entry.compressedSize);
+            n = putInt(n, size64 ? ZIP64_MAGIC : entry.size);
+            n = putShort(n, entry.name.length);
+            n = putShort(n, zip64 ? extra + 4 : 0);
+            n = putShort(n, 0); // comment length
+            n = putShort(n, 0); // disk number
+            n = putShort(n, 0); // internal attributes
+            n = putInt(n, 0); // external attributes
+            n = putInt(n, offset64 ? ZIP64_MAGIC : entry.offset);
+            writeRaw(header, 0, n);
+            writeRaw(entry.name, 0, entry.name.length);
+
+            if (zip64) {
+                n = putShort(0, 0x0001);
+                n = putShort(n, extra);
+                if (size64)
+                    n = putLong(n, entry.size);
+                if (csize64)
+                    n = putLong(n, entry.compressedSize);
+                if (offset64)
+                    n = putLong(n, entry.offset);
+                writeRaw(header, 0, n);
+            }
+        }
+
+        final long end   = position;
+        final long size  = end - start;
+        final int  count = entries.size();
+
+        if (count >= 0xFFFF || size >= ZIP64_MAGIC || start >= ZIP64_MAGIC) {
+            int n = putInt(0, 0x06064b50); // zip64 end of central directory record
+            n = putLong(n, 44);
+            n = putShort(n, 45);
+            n = putShort(n, 45);
+            n = putInt(n, 0);
+            n = putInt(n, 0);
+            n = putLong(n, count);
+            n = putLong(n, count);
+            n = putLong(n, size);
+            n = putLong(n, start);
+            n = putInt(n, 0x07064b50); // zip64 end of central directory locator
+            n = putInt(n, 0);
+            n = putLong(n, end);
+            n = putInt(n, 1);
+            writeRaw(header, 0, n);
+        }
+
+        int n = putInt(0, 0x06054b50);
+        n = putShort(n, 0);
+        n = putShort(n, 0);
+        n = putShort(n, Math.min(count, 0xFFFF));
+        n = putShort(n, Math.min(count, 0xFFFF));
+        n = putInt(n, Math.min(size, ZIP64_MAGIC));
+        n = putInt(n, Math.min(start, ZIP64_MAGIC));
+        n = putShort(n, 0);
+        writeRaw(header, 0, n);
+    }
+
+    // Copies the first length bytes of the part
+    private void transfer(final DeflatedPart part, final long length) throws IOException {
+        if (channel != null) {
+            out.flush();
+            try (final FileChannel in = FileChannel.open(part.getFile().toPath(), StandardOpenOption.READ)) {
+                for (long n = 0; n < length;) {
+                    final long transferred = in.transferTo(n, length - n, channel);
+                    if (transferred <= 0) // transferTo returns 0 at the end of the file
+                        throw new EOFException("unexpected end of file: " + part.getFile());
+                    n += transferred;
+                }
+            }
+            position += length;
+        } else
+            try (final InputStream in = Files.newInputStream(part.getFile().toPath())) {
+                final byte[] buffer = new byte[1 << 16];
+                for (long remaining = length; remaining > 0;) {
+                    final int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0)
+                        throw new EOFException("unexpected end of file: " + part.getFile());
+                    writeRaw(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+    }
+
+    private void writeRaw(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+        position += len;
+    }
+
+    private int putShort(final int i, final int value) {
+        header[i]     = (byte) value;
+        header[i + 1] = (byte) (value >>> 8);
+        return i + 2;
+    }
+
+    private int putInt(final int i, final long value) {
+        putShort(i, (int) value);
+        putShort(i + 2, (int) (value >>> 16));
+        return i + 4;
+    }
+
+    private int putLong(final int i, final long value) {
+        putInt(i, value);
+        putInt(i + 4, value >>> 32);
+        return i + 8;
+    }
+
+    private static long crc(final byte[] b) {
+        final CRC32 crc = new CRC32();
+        crc.update(b);
+        return crc.getValue();
+    }
+
+    // Returns the CRC-32 of two consecutive sequences of bytes, the same as crc32_combine() in zlib
+    private static long combine(long crc1, final long crc2, long length2) {
+        if (length2 <= 0)
+            return crc1;
+
+        final long[] even = new long[32]; // even powers of the zero operator
+        final long[] odd  = new long[32]; // odd powers of the zero operator
+
+        odd[0] = 0xEDB88320L; // the CRC-32 polynomial
+        for (int n = 1; n < 32; n++)
+            odd[n] = 1L << (n - 1);
+
+        square(even, odd); // the operator for two zero bits
+        square(odd, even); // the operator for four zero bits
+
+        // Apply length2 zero bytes to crc1, the first square puts the operator for one zero byte in even
+        do {
+            square(even, odd);
+            if ((length2 & 1) != 0)
+                crc1 = times(even, crc1);
+            length2 >>= 1;
+
+            if (length2 == 0)
+                break;
+
+            square(odd, even);
+            if ((length2 & 1) != 0)
+                crc1 = times(odd, crc1);
+            length2 >>= 1;
+        } while (length2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long times(final long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1)
+            if ((vector & 1) != 0)
+                sum ^= matrix[i];
+        return sum;
+    }
+
+    private static void square(final long[] square, final long[] matrix) {
+        for (int n = 0; n < 32; n++)
+            square[n] = times(matrix, matrix[n]);
+    }
+
+    private static final class Entry {
+
+        final byte[] name;
+        final long   offset;
+        final int    flags;
+
+        long crc            = 0;
+        long size           = 0;
+        long compressedSize = 0;
+
+        Entry(final String name, final long offset, final int flags) {
+            this.name   = name.getBytes(UTF_8);
+            this.offset = offset;
+            this.flags  = flags;
+        }
+
+    }
+
+}
@@ -2,11 +2,17 @@ package software.leonov.cells.util;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.FontUnderline;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * A builder of {@link Font}s.
  * <p>
@@ -34,12 +40,15 @@ import org.apache.poi.ss.usermodel.Workbook;
  * across different workbooks.
  * <p>
  * <b>Note:</b> A workbook can store a finite number of fonts. Be careful not to create identical instances. Fonts
- * should be reused whenever possible.
+ * should be reused whenever possible, {@link #getOrCreate(Workbook)} and {@link #getOrCreate(Workbook, Font)} do so
+ * automatically.
  * 
  * @author Zhenya Leonov
  */
 public final class FontBuilder {
 
+    private static final InternCache<List<Object>> FONTS = new InternCache<>();
+
     private Boolean bold    = null;
     private Integer charset = null;
 
@@ -72,6 +81,56 @@ public final class FontBuilder {
         return font;
     }
 
+    /**
+     * Returns a {@code Font} in the provided workbook with the current settings, creating it only if this method has not
+     * already created one with the same settings in the workbook.
+     * <p>
+     * Unlike {@link #create(Workbook)}, which adds a new font on every call, equal settings always return the same font,
+     * found with a single hash lookup. Besides keeping the file small, this keeps POI's own font lookups, which scan every
+     * font of the workbook, fast. Workbooks are remembered until they are garbage collected.
+     * <p>
+     * <b>Note:</b> The returned font is shared by all callers with the same settings and must not be modified.
+     * 
+     * @param workbook the workbook where the font will be created
+     * @return a {@code Font} with the current settings
+     * @see #getCacheStats()
+     */
+    public Font getOrCreate(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+        return getOrCreate(workbook, key(), w -> create(w).getIndexAsInt());
+    }
+
+    /**
+     * Returns a {@code Font} in the provided workbook with the properties of the provided font updated with the current
+     * builder settings, creating it only if this method has not already created one with the same resulting properties in
+     * the workbook.
+     * <p>
+     * Fonts are identified by their resulting properties, so different base fonts which end up the same after the builder
+     * settings are applied share a single font.
+     * <p>
+     * <b>Note:</b> The returned font is shared by all callers with the same settings and must not be modified.
+     * 
+     * @param workbook the workbook where the font will be created
+     * @param baseFont the font to use as a base
+     * @return a {@code Font} with the properties of the provided font updated with the current builder settings
+     * @see #create(Workbook, Font)
+     */
+    public Font getOrCreate(final Workbook workbook, final Font baseFont) {
+        checkNotNull(workbook, "workbook == null");
+        checkNotNull(baseFont, "baseFont == null");
+        return getOrCreate(workbook, key(baseFont), w -> create(w, baseFont).getIndexAsInt());
+    }
+
+    /**
+     * Returns the number of times the {@code getOrCreate} methods returned an existing font (hits) or created a new one
+     * (misses), across all workbooks.
+     * 
+     * @return the number of times the {@code getOrCreate} methods returned an existing font or created a new one
+     */
+    public static CacheStats getCacheStats() {
+        return FONTS.stats();
+    }
+
     /**
      * Creates a new {@code Font} in the provided workbook, initialized with the properties of the provided font, and then
      * updated with the current builder settings.
@@ -296,6 +355,24 @@ public final class FontBuilder {
             font.setUnderline(underline);
     }
 
+    private static Font getOrCreate(final Workbook workbook, final List<Object> key, final ToIntFunction<Workbook> create) {
+        // xls workbooks skip font index 4, so the highest index can be equal to the number of fonts
+        return workbook.getFontAt(FONTS.intern(workbook, key, workbook.getNumberOfFontsAsInt() + 1, create));
+    }
+
+    private List<Object> key() {
+        return Arrays.asList(bold, charset, color == null ? null : color.getIndex(), fontHeight, fontHeightInPoints, fontName, italic, strikeout, typeOffset, underline);
+    }
+
+    // The properties of a font created by create(Workbook, Font), one element shorter than key() so the two never collide
+    private List<Object> key(final Font baseFont) {
+        final short height = fontHeightInPoints != null ? (short) (fontHeightInPoints * 20) : fontHeight != null ? fontHeight : baseFont.getFontHeight();
+
+        return Arrays.asList(bold != null ? bold : baseFont.getBold(), charset != null ? charset : baseFont.getCharSet(), color != null ? color.getIndex() : baseFont.getColor(), height,
+                fontName != null ? fontName : baseFont.getFontName(), italic != null ? italic : baseFont.getItalic(), strikeout != null ? strikeout : baseFont.getStrikeout(),
+                typeOffset != null ? typeOffset : baseFont.getTypeOffset(), underline != null ? underline : baseFont.getUnderline());
+    }
+
     private static void setColor(final Font font, final IndexedColors color) {
         font.setColor(color.getIndex());
     }
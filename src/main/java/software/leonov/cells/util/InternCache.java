@@ -0,0 +1,63 @@
+package software.leonov.cells.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Remembers the index of the workbook object, such as a cell-style or a font, created for each distinct set of builder
+ * settings, so that equal settings are only created once per workbook.
+ * <p>
+ * Workbooks are weakly referenced and compared by identity. Indexes are stored rather than the objects themselves,
+ * because POI styles and fonts strongly reference their workbook, which would keep it from being garbage collected.
+ *
+ * @param <K> the type of the keys, which must be immutable
+ * @author Zhenya Leonov
+ */
+final class InternCache<K> {
+
+    private final ConcurrentMap<Workbook, Map<K, Integer>> workbooks = new MapMaker().weakKeys().makeMap();
+    private final LongAdder                                hits      = new LongAdder();
+    private final LongAdder                                misses    = new LongAdder();
+
+    /**
+     * Returns the index of the object created for the specified key in the specified workbook, creating it if necessary.
+     *
+     * @param workbook the workbook
+     * @param key      the settings of the object
+     * @param count    the number of objects in the workbook, remembered indexes which are no longer valid are discarded
+     * @param create   creates the object and returns its index
+     * @return the index of the object
+     */
+    int intern(final Workbook workbook, final K key, final int count, final ToIntFunction<Workbook> create) {
+        final Map<K, Integer> indexes = workbooks.computeIfAbsent(workbook, w -> new HashMap<>());
+
+        synchronized (indexes) {
+            final Integer index = indexes.get(key);
+            if (index != null && index < count) {
+                hits.increment();
+                return index;
+            }
+
+            misses.increment();
+            final int created = create.applyAsInt(workbook);
+            indexes.put(key, created);
+            return created;
+        }
+    }
+
+    /**
+     * Returns the number of hits and misses so far.
+     */
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, 0);
+    }
+
+}
@@ -2,6 +2,9 @@ package software.leonov.cells.util;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.DataFormat;
@@ -12,6 +15,8 @@ import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import com.google.common.cache.CacheStats;
+
 /**
  * A builder for creating {@link CellStyle}s.
  * <p>
@@ -45,12 +50,14 @@ import org.apache.poi.ss.usermodel.Workbook;
  * instances across different workbooks.
  * <p>
  * <b>Note:</b> A workbook can store a finite number of cell-styles. Be careful not to create identical instances.
- * Styles should be reused whenever possible.
+ * Styles should be reused whenever possible, {@link #getOrCreate(Workbook)} does so automatically.
  * 
  * @author Zhenya Leonov
  */
 public final class StyleBuilder {
 
+    private static final InternCache<List<Object>> STYLES = new InternCache<>();
+
     // Border styles
     private BorderStyle topBorder    = null;
     private BorderStyle bottomBorder = null;
@@ -121,6 +128,35 @@ public final class StyleBuilder {
         return update(style);
     }
 
+    /**
+     * Returns a {@code CellStyle} in the provided workbook with the current builder settings, creating it only if this
+     * method has not already created one with the same settings in the workbook.
+     * <p>
+     * Unlike {@link #create(Workbook)}, which adds a new style on every call, equal settings always return the same style,
+     * found with a single hash lookup. This keeps workbooks which style cells row by row well below the limit of 4,000
+     * (<i>xls</i>) or 64,000 (<i>xlsx</i>) cell-styles. Workbooks are remembered until they are garbage collected.
+     * <p>
+     * <b>Note:</b> The returned style is shared by all callers with the same settings and must not be modified.
+     * 
+     * @param workbook the workbook where the cell-style will be created
+     * @return a {@code CellStyle} with the current builder settings
+     * @see #getCacheStats()
+     */
+    public CellStyle getOrCreate(final Workbook workbook) {
+        checkNotNull(workbook, "workbook == null");
+        return workbook.getCellStyleAt(STYLES.intern(workbook, key(), workbook.getNumCellStyles(), w -> create(w).getIndex() & 0xFFFF)); // indexes above 32767 are negative shorts
+    }
+
+    /**
+     * Returns the number of times {@link #getOrCreate(Workbook)} returned an existing style (hits) or created a new one
+     * (misses), across all workbooks.
+     * 
+     * @return the number of times {@link #getOrCreate(Workbook)} returned an existing style or created a new one
+     */
+    public static CacheStats getCacheStats() {
+        return STYLES.stats();
+    }
+
     /**
      * Updates the provided style with the current builder settings.
      * 
@@ -542,6 +578,11 @@ public final class StyleBuilder {
         return builder;
     }
 
+    private List<Object> key() {
+        return Arrays.asList(topBorder, bottomBorder, leftBorder, rightBorder, topBorderColor, bottomBorderColor, leftBorderColor, rightBorderColor, dataFormat, fillBackgroundColor, fillForegroundColor, fillPattern,
+                font == null ? null : font.getIndexAsInt(), horizontalAlignment, verticalAlignment, hidden, indention, locked, quotePrefixed, rotation, shrinkToFit, wrapText);
+    }
+
     private void applyBorderColor(final CellStyle style, final BorderSide side, final IndexedColors color) {
         if (color == null)
             return;